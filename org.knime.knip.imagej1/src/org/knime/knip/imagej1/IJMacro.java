@@ -48,11 +48,18 @@
  */
 package org.knime.knip.imagej1;
 
+import java.awt.GraphicsEnvironment;
+import java.io.IOException;
+import java.util.List;
+
+import org.knime.core.node.CanceledExecutionException;
+import org.knime.knip.base.exceptions.KNIPRuntimeException;
 import org.knime.knip.imagej2.core.util.IJToImg;
 import org.knime.knip.imagej2.core.util.ImgToIJ;
 
 import ij.IJ;
 import ij.ImagePlus;
+import ij.Menus;
 import ij.WindowManager;
 import ij.macro.Interpreter;
 import ij.measure.ResultsTable;
@@ -73,73 +80,207 @@ import net.imglib2.type.numeric.RealType;
  */
 public class IJMacro<T extends RealType<T>> {
 
+    /*
+     * IJ1 keeps the batch mode images, the current image and the results table in JVM-global state. All macro runs of
+     * all macro nodes synchronize on this lock while they touch this state.
+     */
+    private static final Object IJ1_LOCK = new Object();
+
+    // created once as it is an AWT component, only accessed while holding IJ1_LOCK
+    private static TextPanel textPanel;
+
+    // plugin directory the IJ1 commands were indexed for, only accessed while holding IJ1_LOCK
+    private static String indexedPluginPath;
+
     // private final String m_ijDirectory;
     private final String m_code;
 
+    private final List<IJMacroOperation> m_operations;
+
+    private final IJMacroWorkerPool m_workers;
+
     private ImgPlus<? extends RealType<?>> m_resImg;
 
     private ResultsTable m_resTable;
 
+    private long m_wrapTime;
+
+    private long m_executionTime;
+
+    private long m_conversionTime;
+
     /**
      * @param code
      */
     public IJMacro(final String code) {
+        this(code, null);
+    }
+
+    /**
+     * @param code
+     * @param operations if not <code>null</code>, these are applied one after the other instead of running the code
+     *            with the IJ1 interpreter
+     */
+    public IJMacro(final String code, final List<IJMacroOperation> operations) {
+        this(code, operations, null);
+    }
+
+    /**
+     * @param code
+     * @param operations if not <code>null</code>, these are applied one after the other instead of running the code
+     *            with the IJ1 interpreter
+     * @param workers if not <code>null</code>, the code is run by the interpreter of one of these separate processes
+     */
+    IJMacro(final String code, final List<IJMacroOperation> operations, final IJMacroWorkerPool workers) {
         m_code = code;
-        Interpreter.batchMode = true;
+        m_operations = operations;
+        m_workers = workers;
+    }
+
+    /**
+     * Makes the commands of the IJ1 plugins in the given directory available to the macros. The plugin directory is
+     * only scanned if it changed since the last call, otherwise the already indexed commands are used.
+     *
+     * @param pluginPath the IJ1 plugin directory
+     */
+    public static void initPlugins(final String pluginPath) {
+        synchronized (IJ1_LOCK) {
+            if (pluginPath.equals(indexedPluginPath)) {
+                return;
+            }
+            System.setProperty("plugins.dir", pluginPath);
+            if (Menus.getCommands() == null) {
+                IJ.init();
+            } else {
+                Menus.updateImageJMenus();
+            }
+            indexedPluginPath = pluginPath;
+        }
     }
 
     /**
      * @param img
      */
-    @SuppressWarnings({"rawtypes", "unchecked"})
     public final void run(final ImgPlus<T> img) {
+        run(img, false);
+    }
+
+    /**
+     * @param img
+     * @param allSlices if true, the direct operations process all slices of the image, otherwise only the current one
+     *            like the interpreter does. The code run by the interpreter decides this on its own.
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    public final void run(final ImgPlus<T> img, final boolean allSlices) {
+
+        final long start = System.nanoTime();
+
+        // Prepare images, the conversion doesn't touch any global IJ1 state and is done outside of the lock
+        final ImagePlus plus = ImgToIJ.wrap(img);
+        plus.setTitle(img.getName());
+
+        final long wrapped = System.nanoTime();
+        m_wrapTime = wrapped - start;
+
+        ImagePlus resPlus = null;
+        if (m_operations != null) {
+            // no global state involved, hence no locking
+            for (final IJMacroOperation op : m_operations) {
+                op.run(plus, allSlices);
+            }
+            resPlus = plus;
+            m_resTable = null;
+        } else if (m_workers != null) {
+            // only the global IJ1 state of the separate process is involved, which runs one macro at a time
+            try {
+                final IJMacroWorkerProcess.Result result = m_workers.run(m_code, plus);
+                resPlus = result.m_image;
+                m_resTable = result.m_table;
+            } catch (final IOException e) {
+                throw new KNIPRuntimeException(e.getMessage(), e);
+            } catch (final CanceledExecutionException e) {
+                throw new KNIPRuntimeException(e.getMessage(), e);
+            }
+        } else {
+            synchronized (IJ1_LOCK) {
+                try {
+                    Interpreter.batchMode = true;
+
+                    // We fake a text panel as some result tables require one..
+                    if (textPanel == null && !GraphicsEnvironment.isHeadless()) {
+                        textPanel = new TextPanel("Dummy");
+                    }
+                    if (textPanel != null) {
+                        textPanel.clear();
+                        IJ.setTextPanel(textPanel);
+                    }
+                    final Interpreter inter = new Interpreter();
+                    Interpreter.addBatchModeImage(plus);
+                    WindowManager.setTempCurrentImage(plus);
+                    ResultsTable.getResultsTable().reset();
+
+                    // This must be the run method with two string
+                    // arguments
+                    inter.run(m_code, "");
 
-        m_resTable = ResultsTable.getResultsTable();
-
-        // We fake a text panel as some result tables require one..
-
-        // TODO Run different ImageJ instances?
-        synchronized (m_resTable) {
-            IJ.setTextPanel(new TextPanel("Dummy"));
-            final Interpreter inter = new Interpreter();
-            // Prepare images
-            final ImagePlus plus = ImgToIJ.wrap(img);
-            plus.setTitle(img.getName());
-            Interpreter.addBatchModeImage(plus);
-            WindowManager.setTempCurrentImage(plus);
-            m_resTable.reset();
-
-            // This must be the run method with two string
-            // arguments
-            inter.run(m_code, "");
-
-            final ImagePlus resPlus = Interpreter.getLastBatchModeImage();
-            if (resPlus != null) {
-                // If the image was only modified,
-                // truncate to the same
-                // dimensionality
-                Img res = (Img)Operations.compute(new IJToImg(IJToImg.createMatchingType(resPlus), false, 5), resPlus);
-
-                final Img<? extends RealType<?>> cleanRes =
-                        new ImgView(SubsetOperations.subsetview(res, res), img.factory());
-
-                if (cleanRes.numDimensions() == img.numDimensions()) {
-                    // If the image was only
-                    // modified and it holds meta
-                    // data, drag them along
-                    m_resImg = new ImgPlus(cleanRes, img);
-                } else {
-                    m_resImg = new ImgPlus(cleanRes);
+                    resPlus = Interpreter.getLastBatchModeImage();
+
+                    // the global table is reset by the next run
+                    m_resTable = (ResultsTable)ResultsTable.getResultsTable().clone();
+                } finally {
+                    // always clean up, otherwise images left behind by a failing macro or plugin would be picked up as
+                    // result by the following runs
+                    cleanUp(resPlus);
                 }
             }
+        }
+
+        final long executed = System.nanoTime();
+        m_executionTime = executed - wrapped;
+
+        if (resPlus != null) {
+            // If the image was only modified,
+            // truncate to the same
+            // dimensionality
+            Img res = (Img)Operations.compute(new IJToImg(IJToImg.createMatchingType(resPlus), false, 5), resPlus);
 
-             m_resTable = ResultsTable.getResultsTable();
-            // Clean up
-            while (WindowManager.getImageCount() > 0) {
-                final ImagePlus current = WindowManager.getCurrentImage();
-                Interpreter.removeBatchModeImage(current);
+            final Img<? extends RealType<?>> cleanRes =
+                    new ImgView(SubsetOperations.subsetview(res, res), img.factory());
+
+            if (cleanRes.numDimensions() == img.numDimensions()) {
+                // If the image was only
+                // modified and it holds meta
+                // data, drag them along
+                m_resImg = new ImgPlus(cleanRes, img);
+            } else {
+                m_resImg = new ImgPlus(cleanRes);
+            }
+        } else {
+            // the macro closed its image or only produced a results table
+            m_resImg = null;
+        }
+        m_conversionTime = System.nanoTime() - executed;
+    }
+
+    /*
+     * Closes all images the macro left behind. The result image is only detached and not closed as it is converted
+     * outside of the lock. Must be called while holding IJ1_LOCK.
+     */
+    private static void cleanUp(final ImagePlus resPlus) {
+        WindowManager.setTempCurrentImage(null);
+        // in batch mode all images created by the macro are batch mode images
+        for (final int id : Interpreter.getBatchModeImageIDs()) {
+            final ImagePlus current = WindowManager.getImage(id);
+            if (current == null) {
+                continue;
+            }
+            Interpreter.removeBatchModeImage(current);
+            if (current != resPlus) {
                 current.close();
             }
+        }
+        // plugins may still open windows, which only exist if AWT is available
+        if (!GraphicsEnvironment.isHeadless()) {
             WindowManager.closeAllWindows();
         }
     }
@@ -157,4 +298,25 @@ public class IJMacro<T extends RealType<T>> {
     public final ResultsTable resTable() {
         return m_resTable;
     }
+
+    /**
+     * @return nanoseconds the last run spent converting the input into an {@link ImagePlus}
+     */
+    public final long wrapTime() {
+        return m_wrapTime;
+    }
+
+    /**
+     * @return nanoseconds the last run spent executing the macro, including the wait for other macro runs
+     */
+    public final long executionTime() {
+        return m_executionTime;
+    }
+
+    /**
+     * @return nanoseconds the last run spent converting the result back into an {@link ImgPlus}
+     */
+    public final long conversionTime() {
+        return m_conversionTime;
+    }
 }
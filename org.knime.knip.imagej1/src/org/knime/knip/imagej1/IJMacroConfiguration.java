@@ -56,6 +56,9 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.FocusAdapter;
 import java.awt.event.FocusEvent;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
 
@@ -77,6 +80,10 @@ import org.knime.knip.base.nodes.io.kernel.SerializableSetting;
 /**
  * Configuration for a default IJMacro
  *
+ * Macros which can be expressed by direct calls of the IJ1 API additionally declare a
+ * <code>public static IJMacroOperation createDirectOperation(String[] settings)</code>, which gets the values of the
+ * code options in the order they were added in {@link #codeOptions()}. It is static as the configurations create their
+ * Swing components on construction, which must not happen during the execution of the node.
  *
  * @author <a href="mailto:dietzc85@googlemail.com">Christian Dietz</a>
  * @author <a href="mailto:horn_martin@gmx.de">Martin Horn</a>
@@ -538,6 +545,8 @@ class MacroSetting extends SerializableSetting<String> {
 
     private static final long serialVersionUID = 1L;
 
+    private static final String DIRECT_OPERATION_FACTORY = "createDirectOperation";
+
     final String code;
 
     final String[] cachedSettings;
@@ -561,6 +570,30 @@ class MacroSetting extends SerializableSetting<String> {
         return code;
     }
 
+    /**
+     * @return operation running this macro without the interpreter or <code>null</code> if there is none or the code
+     *         was modified by the user
+     */
+    IJMacroOperation createDirectOperation() {
+        if (usedTemplate) {
+            return null;
+        }
+        try {
+            final Method factory = config.getMethod(DIRECT_OPERATION_FACTORY, String[].class);
+            if (!Modifier.isStatic(factory.getModifiers())) {
+                return null;
+            }
+            return (IJMacroOperation)factory.invoke(null, (Object)cachedSettings);
+        } catch (final NoSuchMethodException e) {
+            return null;
+        } catch (final IllegalAccessException e) {
+            return null;
+        } catch (final InvocationTargetException e) {
+            // invalid option values, the interpreter reports them
+            return null;
+        }
+    }
+
     @Override
     protected SerializableConfiguration<String> createConfiguration() {
         try {
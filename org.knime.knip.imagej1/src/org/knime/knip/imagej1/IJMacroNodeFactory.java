@@ -48,18 +48,24 @@
  */
 package org.knime.knip.imagej1;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.StringTokenizer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import org.knime.core.data.DataCell;
 import org.knime.core.data.DataColumnSpec;
 import org.knime.core.data.DataColumnSpecCreator;
 import org.knime.core.data.DataRow;
 import org.knime.core.data.DataTableSpec;
+import org.knime.core.data.DataType;
 import org.knime.core.data.def.DefaultRow;
 import org.knime.core.data.def.DoubleCell;
 import org.knime.core.data.def.StringCell;
@@ -67,6 +73,7 @@ import org.knime.core.node.BufferedDataContainer;
 import org.knime.core.node.BufferedDataTable;
 import org.knime.core.node.ExecutionContext;
 import org.knime.core.node.InvalidSettingsException;
+import org.knime.core.node.KNIMEConstants;
 import org.knime.core.node.NodeFactory;
 import org.knime.core.node.NotConfigurableException;
 import org.knime.core.node.defaultnodesettings.DialogComponent;
@@ -77,6 +84,7 @@ import org.knime.core.node.defaultnodesettings.SettingsModelString;
 import org.knime.core.node.port.PortObject;
 import org.knime.core.node.port.PortObjectSpec;
 import org.knime.core.node.port.PortType;
+import org.knime.knip.base.KNIPConstants;
 import org.knime.knip.base.data.img.ImgPlusCell;
 import org.knime.knip.base.data.img.ImgPlusCellFactory;
 import org.knime.knip.base.data.img.ImgPlusValue;
@@ -91,6 +99,7 @@ import org.knime.knip.base.node.nodesettings.SettingsModelDimSelection;
 import org.knime.knip.base.node.nodesettings.SettingsModelSerializableObjects;
 import org.knime.knip.base.nodes.io.kernel.DialogComponentSerializableConfiguration;
 import org.knime.knip.base.nodes.io.kernel.SerializableSetting;
+import org.knime.knip.core.ThreadPoolExecutorService;
 import org.knime.knip.core.data.img.DefaultImgMetadata;
 import org.knime.knip.core.util.MinimaUtils;
 import org.knime.knip.imagej1.macro.AnalyzeParticlesIJMacro;
@@ -107,14 +116,18 @@ import org.knime.knip.imagej1.macro.SkeletonizeIJMacro;
 import org.knime.knip.imagej1.macro.SubstractBackgroundIJMacro;
 import org.knime.knip.imagej1.macro.WatershedIJMacro;
 import org.knime.knip.imagej1.prefs.IJ1Preferences;
+import org.knime.knip.imagej2.core.util.ImgToIJ;
 import org.knime.knip.imagej2.core.util.UntransformableIJTypeException;
 import org.knime.node2012.KnimeNodeDocument.KnimeNode;
 
 import ij.measure.ResultsTable;
 import net.imagej.ImgPlus;
 import net.imagej.ImgPlusMetadata;
+import net.imagej.axis.Axes;
+import net.imagej.axis.AxisType;
 import net.imglib2.Interval;
 import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.Img;
 import net.imglib2.img.ImgView;
 import net.imglib2.ops.operation.SubsetOperations;
 import net.imglib2.ops.operation.iterableinterval.unary.IterableIntervalCopy;
@@ -136,6 +149,12 @@ import net.imglib2.view.Views;
 public class IJMacroNodeFactory<T extends RealType<T>>
         extends GenericValueToCellNodeFactory<ImgPlusValue, ValueToCellNodeModel<ImgPlusValue, ImgPlusCell>> {
 
+    /*
+     * Snippets whose macro processes each plane of a stack when run by the interpreter.
+     */
+    private static final List<Class<? extends IJMacroConfiguration>> STACK_AWARE_SNIPPETS =
+            Arrays.<Class<? extends IJMacroConfiguration>> asList(PureCodeIJMacro.class, WatershedIJMacro.class);
+
     private static SettingsModelSerializableObjects<SerializableSetting<String>> createMacroSelectionModel() {
         return new SettingsModelSerializableObjects<SerializableSetting<String>>("kernels", new ImageJ1ObjectExt0());
     }
@@ -152,6 +171,18 @@ public class IJMacroNodeFactory<T extends RealType<T>>
         return new SettingsModelBoolean("resulttable_entries_as_string", false);
     }
 
+    private static SettingsModelBoolean createWholeStackModel() {
+        return new SettingsModelBoolean("process_whole_stack", false);
+    }
+
+    private static SettingsModelBoolean createProfilingModel() {
+        return new SettingsModelBoolean("push_timing_flow_variables", false);
+    }
+
+    private static SettingsModelBoolean createSeparateProcessModel() {
+        return new SettingsModelBoolean("run_in_separate_process", false);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -169,6 +200,20 @@ public class IJMacroNodeFactory<T extends RealType<T>>
 
             private final SettingsModelBoolean m_resultTableEntriesAsString = createResultTableEntriesAsStringModel();
 
+            private final SettingsModelBoolean m_wholeStack = createWholeStackModel();
+
+            private final SettingsModelBoolean m_profiling = createProfilingModel();
+
+            private final SettingsModelBoolean m_separateProcess = createSeparateProcessModel();
+
+            private String m_code;
+
+            private List<IJMacroOperation> m_operations;
+
+            private IJMacroWorkerPool m_workers;
+
+            private ExecutorService m_intervalService;
+
             private IJMacro<T> m_macro;
 
             private ImgPlusCellFactory m_imgCellFactory;
@@ -177,6 +222,10 @@ public class IJMacroNodeFactory<T extends RealType<T>>
 
             private String m_currentRowKey;
 
+            private long m_currentRowStart;
+
+            private IJMacroProfile m_profile;
+
             private ExecutionContext m_exec;
 
             /**
@@ -184,6 +233,9 @@ public class IJMacroNodeFactory<T extends RealType<T>>
              */
             @Override
             protected PortObjectSpec[] configure(final PortObjectSpec[] inSpecs) throws InvalidSettingsException {
+                if (m_wholeStack.getBooleanValue() && m_flowVarCode.getStringValue().length() == 0) {
+                    checkWholeStackSnippets();
+                }
                 final PortObjectSpec firstSpec = super.configure(inSpecs)[0];
                 return new PortObjectSpec[]{firstSpec, null};
             }
@@ -193,7 +245,19 @@ public class IJMacroNodeFactory<T extends RealType<T>>
              */
             @Override
             protected PortObject[] execute(final PortObject[] inObjects, final ExecutionContext exec) throws Exception {
-                final PortObject firstPort = super.execute(inObjects, exec)[0];
+                final PortObject firstPort;
+                try {
+                    firstPort = super.execute(inObjects, exec)[0];
+                } finally {
+                    closeWorker();
+                    shutdownIntervalService();
+                }
+                if (m_currentRowKey != null) {
+                    m_profile.addRow(m_currentRowKey, System.nanoTime() - m_currentRowStart);
+                }
+                if (m_profiling.getBooleanValue()) {
+                    pushTimingFlowVariables();
+                }
                 PortObject secondPort = null;
                 if (m_resTableContainer == null) {
                     m_resTableContainer = exec.createDataContainer(new DataTableSpec());
@@ -204,27 +268,121 @@ public class IJMacroNodeFactory<T extends RealType<T>>
 
             }
 
+            /*
+             * Built-in snippets run by the interpreter only process the current slice of a stack, which in whole stack
+             * mode would leave all but the first plane unchanged. Direct operations and code written by the user are
+             * not restricted.
+             */
+            private void checkWholeStackSnippets() throws InvalidSettingsException {
+                final List<SerializableSetting<String>> conf = m_macroSelection.getObjects();
+                if (createDirectOperations(conf) != null) {
+                    return;
+                }
+                for (final SerializableSetting<String> fc : conf) {
+                    if (fc instanceof MacroSetting && !((MacroSetting)fc).usedTemplate
+                            && !STACK_AWARE_SNIPPETS.contains(((MacroSetting)fc).config)) {
+                        throw new InvalidSettingsException("The snippet '" + fc.get()
+                                + "' only processes the first plane of a stack. Disable the whole stack processing.");
+                    }
+                }
+            }
+
+            private void closeWorker() {
+                if (m_workers != null) {
+                    m_workers.close();
+                    m_workers = null;
+                }
+            }
+
+            private void shutdownIntervalService() {
+                if (m_intervalService != null) {
+                    m_intervalService.shutdownNow();
+                    m_intervalService = null;
+                }
+            }
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            protected void onDispose() {
+                super.onDispose();
+                closeWorker();
+                shutdownIntervalService();
+            }
+
+            private void pushTimingFlowVariables() {
+                for (final Map.Entry<String, Double> step : m_profile.stepTimes().entrySet()) {
+                    pushFlowVariableDouble("ijmacro_time_" + step.getKey() + "_ms", step.getValue());
+                }
+                if (m_profile.slowestRow() != null) {
+                    pushFlowVariableString("ijmacro_slowest_row", m_profile.slowestRow());
+                    pushFlowVariableDouble("ijmacro_slowest_row_ms", m_profile.slowestRowTime());
+                }
+                if (m_profile.slowestInterval() != null) {
+                    pushFlowVariableString("ijmacro_slowest_interval", m_profile.slowestInterval());
+                    pushFlowVariableDouble("ijmacro_slowest_interval_ms", m_profile.slowestIntervalTime());
+                }
+            }
+
             @Override
             protected void prepareExecute(final ExecutionContext exec) {
                 final List<SerializableSetting<String>> conf = m_macroSelection.getObjects();
                 String code = "";
+                List<IJMacroOperation> operations = null;
                 if (m_flowVarCode.getStringValue().length() == 0) {
                     for (final SerializableSetting<String> fc : conf) {
                         code += fc.get();
                     }
+                    operations = createDirectOperations(conf);
                 } else {
                     setWarningMessage("IJ macro code controlled by a flow variable!");
                     code = m_flowVarCode.getStringValue();
                     m_flowVarCode.setStringValue("");
                 }
 
-                m_macro = new IJMacro<T>(code);
+                m_code = code;
+                m_operations = operations;
+                closeWorker();
+                shutdownIntervalService();
+                m_intervalService = new ThreadPoolExecutorService(
+                        KNIMEConstants.GLOBAL_THREAD_POOL.createSubPool(KNIPConstants.THREADS_PER_NODE));
+                if (operations == null && m_separateProcess.getBooleanValue()) {
+                    try {
+                        // one process for each interval task which may run at the same time
+                        m_workers = new IJMacroWorkerPool(IJ1Preferences.getIJ1PluginPath(), exec,
+                                KNIPConstants.THREADS_PER_NODE);
+                    } catch (final IOException e) {
+                        throw new KNIPRuntimeException("The ImageJ processes can't be prepared: " + e.getMessage(), e);
+                    }
+                }
+                m_macro = new IJMacro<T>(code, operations, m_workers);
                 m_imgCellFactory = new ImgPlusCellFactory(exec);
 
                 m_exec = exec;
                 m_resTableContainer = null;
+                m_currentRowKey = null;
+                m_profile = new IJMacroProfile();
 
-                System.setProperty("plugins.dir", IJ1Preferences.getIJ1PluginPath());
+                if (operations == null && m_workers == null) {
+                    IJMacro.initPlugins(IJ1Preferences.getIJ1PluginPath());
+                }
+            }
+
+            /*
+             * Built-in snippets are run without the interpreter if all of them support it, otherwise null is returned.
+             */
+            private List<IJMacroOperation> createDirectOperations(final List<SerializableSetting<String>> conf) {
+                final List<IJMacroOperation> operations = new ArrayList<IJMacroOperation>(conf.size());
+                for (final SerializableSetting<String> fc : conf) {
+                    final IJMacroOperation op =
+                            fc instanceof MacroSetting ? ((MacroSetting)fc).createDirectOperation() : null;
+                    if (op == null) {
+                        return null;
+                    }
+                    operations.add(op);
+                }
+                return operations;
             }
 
             private DataTableSpec createResultTableSpec(final ResultsTable table) {
@@ -253,9 +411,6 @@ public class IJMacroNodeFactory<T extends RealType<T>>
 
                 final Interval[] intervals = m_dimSelection.getIntervals(img, img);
                 final int[] m_selectedDims = m_dimSelection.getSelectedDimIndices(img);
-                final IterableIntervalCopy copyOp = new IterableIntervalCopy();
-
-                ImgPlus res = null;
 
                 if (m_selectedDims.length < 2) {
                     throw new KNIPException(
@@ -263,93 +418,258 @@ public class IJMacroNodeFactory<T extends RealType<T>>
                                     + cellValue.getMetadata().getName() + ". MissingCell is created.");
                 }
 
-                long[] min = new long[img.numDimensions()];
-                for (final Interval interval : intervals) {
-                    interval.min(min);
-
-                    RandomAccessibleInterval subsetview = SubsetOperations.subsetview(img.getImg(), interval);
-                    ImgPlusMetadata meta = MetadataUtil
-                            .copyAndCleanImgPlusMetadata(interval, img,
-                                                         new DefaultImgMetadata(subsetview.numDimensions()));
+                if (m_wholeStack.getBooleanValue() && m_selectedDims.length == 2 && intervals.length > 1) {
+                    return m_imgCellFactory.createCell(computeWholeStack(img, intervals, m_selectedDims));
+                }
 
-                    try {
-                        ImgPlus<T> imgPlus = new ImgPlus<T>(ImgView.wrap(subsetview, img.factory()), meta);
-                        m_macro.run(imgPlus);
-                    } catch (UntransformableIJTypeException e) {
-                        throw new KNIPRuntimeException(e.getMessage(), e);
-                    } catch (KNIPRuntimeException e) {
-                        throw e;
-                    } catch (Exception e) {
-                        throw new KNIPRuntimeException(
-                                "The specified macro has thrown an error while execution. Make sure that the used plugins are available in the selected IJ1 plugin folder! See KNIME Log for details!",
-                                e);
+                // the first interval determines dimensions and type of the result
+                final long firstStart = System.nanoTime();
+                runMacro(m_macro, img, intervals[0]);
+                final ImgPlus firstRes = resultImg(m_macro, intervals[0]);
+
+                final ImgPlus res;
+                if (intervals.length > 1) {
+                    final long[] dims = new long[img.numDimensions()];
+                    img.dimensions(dims);
+                    for (int i = 0; i < m_selectedDims.length; i++) {
+                        dims[m_selectedDims[i]] = firstRes.dimension(i);
+                    }
+                    res = new ImgPlus(img.factory().create(dims, firstRes.firstElement().createVariable()), img);
+                    res.setSource(img.getSource());
+                    copyIntoResult(firstRes, res, intervals[0]);
+                    m_profile.addInterval(intervalName(intervals[0]), System.nanoTime() - firstStart);
+                } else {
+                    res = firstRes;
+                    res.setSource(img.getSource());
+                }
+                addResultTableRows(m_macro.resTable(), intervals[0], intervals.length > 1);
+
+                if (intervals.length > 1) {
+                    // The remaining intervals are independent of each other, each task writes into its own disjoint
+                    // subset of the result. The rows of the result tables are added in interval order afterwards.
+                    // Interpreter runs within KNIME serialize on the global IJ1 lock in IJMacro, only the conversions
+                    // and direct operations run in parallel there. Runs in separate processes are spread over the
+                    // processes of the pool.
+                    final ExecutorService service = m_intervalService;
+                    final List<Future<ResultsTable>> futures =
+                            new ArrayList<Future<ResultsTable>>(intervals.length - 1);
+                    for (int i = 1; i < intervals.length; i++) {
+                        final Interval interval = intervals[i];
+                        futures.add(service.submit(new Callable<ResultsTable>() {
+                            @Override
+                            public ResultsTable call() {
+                                final long start = System.nanoTime();
+                                final IJMacro<T> macro = new IJMacro<T>(m_code, m_operations, m_workers);
+                                runMacro(macro, img, interval);
+                                copyIntoResult(resultImg(macro, interval), res, interval);
+                                m_profile.addInterval(intervalName(interval), System.nanoTime() - start);
+                                return macro.resTable();
+                            }
+                        }));
                     }
 
-                    if (res == null && intervals.length > 1) {
-                        final long[] dims = new long[img.numDimensions()];
-                        img.dimensions(dims);
-                        for (int i = 0; i < m_selectedDims.length; i++) {
-                            dims[m_selectedDims[i]] = m_macro.resImgPlus().dimension(i);
+                    try {
+                        for (int i = 1; i < intervals.length; i++) {
+                            m_exec.checkCanceled();
+                            addResultTableRows(futures.get(i - 1).get(), intervals[i], true);
+                        }
+                    } catch (final ExecutionException e) {
+                        if (e.getCause() instanceof KNIPRuntimeException) {
+                            throw (KNIPRuntimeException)e.getCause();
+                        }
+                        throw new KNIPRuntimeException(e.getCause().getMessage(), e.getCause());
+                    } finally {
+                        for (final Future<ResultsTable> f : futures) {
+                            f.cancel(true);
                         }
-                        res = new ImgPlus(
-                                img.factory().create(dims, m_macro.resImgPlus().firstElement().createVariable()), img);
-                        res.setSource(img.getSource());
                     }
+                }
+
+                return m_imgCellFactory.createCell(res);
+            }
+
+            /*
+             * Packs all selected planes into one stack and runs the macro only once on it. Macros processing whole
+             * stacks save the conversions and the interpreter start for each single plane this way.
+             */
+            @SuppressWarnings("unchecked")
+            private ImgPlus computeWholeStack(final ImgPlus img, final Interval[] intervals, final int[] selectedDims) {
+                final long[] packedDims =
+                        new long[]{img.dimension(selectedDims[0]), img.dimension(selectedDims[1]), intervals.length};
+                final Img packed = img.factory().create(packedDims, img.firstElement().createVariable());
+                for (int i = 0; i < intervals.length; i++) {
+                    new IterableIntervalCopy().compute(
+                            Views.iterable(SubsetOperations.subsetview(img.getImg(), intervals[i])),
+                            Views.iterable(Views.hyperSlice(packed, 2, i)));
+                }
+                runMacro(m_macro, new ImgPlus<T>(packed, img.getName(), new AxisType[]{Axes.X, Axes.Y, Axes.Z}), true);
+
+                final ImgPlus macroRes = m_macro.resImgPlus();
+                if (macroRes == null) {
+                    throw new KNIPRuntimeException("The macro produced no image for the stack of row "
+                            + m_currentRowKey + ". It must leave an image open as result.");
+                }
+                if (macroRes.numDimensions() != 3 || macroRes.dimension(2) != intervals.length) {
+                    throw new KNIPRuntimeException("The macro didn't return one plane for each of the "
+                            + intervals.length + " input planes. Disable the whole stack processing for this macro.");
+                }
+
+                final long[] dims = new long[img.numDimensions()];
+                img.dimensions(dims);
+                dims[selectedDims[0]] = macroRes.dimension(0);
+                dims[selectedDims[1]] = macroRes.dimension(1);
+                final ImgPlus res =
+                        new ImgPlus(img.factory().create(dims, macroRes.firstElement().createVariable()), img);
+                res.setSource(img.getSource());
+                for (int i = 0; i < intervals.length; i++) {
+                    new IterableIntervalCopy().compute(Views.iterable(Views.hyperSlice(macroRes, 2, i)), Views
+                            .iterable((RandomAccessibleInterval<T>)SubsetOperations.subsetview(res, intervals[i])));
+                }
+
+                addResultTableRows(m_macro.resTable(), intervals[0], false);
+                return res;
+            }
+
+            private void runMacro(final IJMacro<T> macro, final ImgPlus img, final Interval interval) {
+                // planes of planar images are passed on without a view, which lets them be copied to IJ1 in bulk
+                Img subset = ImgToIJ.planarSubset(img.getImg(), interval);
+                if (subset == null) {
+                    subset = ImgView.wrap(SubsetOperations.subsetview(img.getImg(), interval), img.factory());
+                }
+                final ImgPlusMetadata meta = MetadataUtil
+                        .copyAndCleanImgPlusMetadata(interval, img, new DefaultImgMetadata(subset.numDimensions()));
+                runMacro(macro, new ImgPlus<T>(subset, meta), false);
+            }
+
+            private void runMacro(final IJMacro<T> macro, final ImgPlus<T> imgPlus, final boolean allSlices) {
+                try {
+                    macro.run(imgPlus, allSlices);
+                    m_profile.addMacroRun(macro);
+                } catch (UntransformableIJTypeException e) {
+                    throw new KNIPRuntimeException(e.getMessage(), e);
+                } catch (KNIPRuntimeException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new KNIPRuntimeException(
+                            "The specified macro has thrown an error while execution. Make sure that the used plugins are available in the selected IJ1 plugin folder! See KNIME Log for details!",
+                            e);
+                }
+            }
+
+            /*
+             * The result image of the last run of the macro, fails if the macro closed its image or only produced a
+             * results table.
+             */
+            private ImgPlus resultImg(final IJMacro<T> macro, final Interval interval) {
+                final ImgPlus res = macro.resImgPlus();
+                if (res == null) {
+                    throw new KNIPRuntimeException("The macro produced no image for interval " + intervalName(interval)
+                            + ". It must leave an image open as result.");
+                }
+                return res;
+            }
+
+            @SuppressWarnings("unchecked")
+            private void copyIntoResult(final ImgPlus macroRes, final ImgPlus res, final Interval interval) {
+                final long start = System.nanoTime();
+                new IterableIntervalCopy().compute(macroRes,
+                                                   Views.iterable((RandomAccessibleInterval<T>)SubsetOperations
+                                                           .subsetview(res, interval)));
+                m_profile.addCopy(System.nanoTime() - start);
+            }
 
-                    if (intervals.length > 1) {
-                        copyOp.compute(m_macro.resImgPlus(), Views
-                                .iterable((RandomAccessibleInterval<T>)SubsetOperations.subsetview(res, interval)));
-                    } else {
-                        res = m_macro.resImgPlus();
-                        res.setSource(img.getSource());
+            // fill result table if available
+            private void addResultTableRows(final ResultsTable table, final Interval interval,
+                                            final boolean multipleIntervals) {
+                if (table == null) {
+                    return;
+                }
+                final long start = System.nanoTime();
+                ensureResultTableColumns(table);
+
+                final DataTableSpec spec = m_resTableContainer.getTableSpec();
+                final int numCols = spec.getNumColumns();
+                final int numRows = table.getCounter();
+                final boolean asString = m_resultTableEntriesAsString.getBooleanValue();
+
+                // columns are read in bulk, columns unknown to this table result in missing cells
+                final int[] colIndices = new int[numCols];
+                final double[][] colValues = new double[numCols][];
+                for (int c = 0; c < numCols; c++) {
+                    colIndices[c] = table.getColumnIndex(spec.getColumnSpec(c).getName());
+                    if (!asString && colIndices[c] != ResultsTable.COLUMN_NOT_FOUND) {
+                        colValues[c] = table.getColumnAsDoubles(colIndices[c]);
                     }
+                }
 
-                    // fill result table if available
-                    if (m_macro.resTable() != null) {
-                        if (m_resTableContainer == null) {
-                            final DataTableSpec spec = createResultTableSpec(m_macro.resTable());
-                            if (spec != null) {
-                                m_resTableContainer = m_exec.createDataContainer(spec);
-                            } else {
-                                m_resTableContainer = null;
-                            }
-                        }
-                        if (m_resTableContainer != null) {
-                            final int numCols = m_resTableContainer.getTableSpec().getNumColumns();
-                            final int[] colIndices = new int[numCols];
-                            for (int i = 0; i < colIndices.length; i++) {
-                                colIndices[i] = m_macro.resTable()
-                                        .getColumnIndex(m_resTableContainer.getTableSpec().getColumnSpec(i).getName());
-                            }
-                            for (int r = 0; r < m_macro.resTable().getCounter(); r++) {
-                                final DataCell[] cells;
-                                if (!m_resultTableEntriesAsString.getBooleanValue()) {
-                                    cells = new DoubleCell[numCols];
-                                    for (int c = 0; c < cells.length; c++) {
-                                        cells[c] =
-                                                new DoubleCell(m_macro.resTable().getValueAsDouble(colIndices[c], r));
-                                    }
-                                } else {
-                                    cells = new StringCell[numCols];
-                                    for (int c = 0; c < cells.length; c++) {
-                                        cells[c] = new StringCell(m_macro.resTable().getStringValue(colIndices[c], r));
-                                    }
-                                }
-
-                                String rowKey;
-                                if (intervals.length > 1) {
-                                    rowKey = m_currentRowKey + "#" + Arrays.toString(min) + "#" + r;
-                                } else {
-                                    rowKey = m_currentRowKey + "#" + r;
-                                }
-                                m_resTableContainer.addRowToTable(new DefaultRow(rowKey, cells));
-                            }
+                final String keyPrefix;
+                if (multipleIntervals) {
+                    final long[] min = new long[interval.numDimensions()];
+                    interval.min(min);
+                    keyPrefix = m_currentRowKey + "#" + Arrays.toString(min) + "#";
+                } else {
+                    keyPrefix = m_currentRowKey + "#";
+                }
+
+                for (int r = 0; r < numRows; r++) {
+                    final DataCell[] cells = new DataCell[numCols];
+                    for (int c = 0; c < numCols; c++) {
+                        if (colIndices[c] == ResultsTable.COLUMN_NOT_FOUND) {
+                            cells[c] = DataType.getMissingCell();
+                        } else if (asString) {
+                            cells[c] = new StringCell(table.getStringValue(colIndices[c], r));
+                        } else if (colValues[c] == null) {
+                            cells[c] = DataType.getMissingCell();
+                        } else {
+                            cells[c] = new DoubleCell(colValues[c][r]);
                         }
+                    }
+                    m_resTableContainer.addRowToTable(new DefaultRow(keyPrefix + r, cells));
+                }
+                m_profile.addResultTable(System.nanoTime() - start);
+            }
+
+            private String intervalName(final Interval interval) {
+                final long[] min = new long[interval.numDimensions()];
+                interval.min(min);
+                return m_currentRowKey + "#" + Arrays.toString(min);
+            }
 
+            /*
+             * Creates the result table container or, if the table holds columns which were not seen before, appends
+             * them to the already written rows as missing values.
+             */
+            private void ensureResultTableColumns(final ResultsTable table) {
+                final DataTableSpec tableSpec = createResultTableSpec(table);
+                if (m_resTableContainer == null) {
+                    m_resTableContainer = m_exec.createDataContainer(tableSpec);
+                    return;
+                }
+
+                final DataTableSpec current = m_resTableContainer.getTableSpec();
+                final List<DataColumnSpec> newCols = new ArrayList<DataColumnSpec>();
+                for (final DataColumnSpec colSpec : tableSpec) {
+                    if (!current.containsName(colSpec.getName())) {
+                        newCols.add(colSpec);
                     }
                 }
+                if (newCols.isEmpty()) {
+                    return;
+                }
 
-                return m_imgCellFactory.createCell(res);
+                m_resTableContainer.close();
+                final BufferedDataTable previous = m_resTableContainer.getTable();
+                final DataTableSpec added = new DataTableSpec(newCols.toArray(new DataColumnSpec[newCols.size()]));
+                m_resTableContainer = m_exec.createDataContainer(new DataTableSpec(current, added));
+                final int numCols = m_resTableContainer.getTableSpec().getNumColumns();
+                for (final DataRow row : previous) {
+                    final DataCell[] cells = new DataCell[numCols];
+                    for (int c = 0; c < numCols; c++) {
+                        cells[c] = c < row.getNumCells() ? row.getCell(c) : DataType.getMissingCell();
+                    }
+                    m_resTableContainer.addRowToTable(new DefaultRow(row.getKey(), cells));
+                }
+                m_exec.clearTable(previous);
             }
 
             /**
@@ -357,6 +677,11 @@ public class IJMacroNodeFactory<T extends RealType<T>>
              */
             @Override
             protected void computeDataRow(final DataRow row) {
+                final long now = System.nanoTime();
+                if (m_currentRowKey != null) {
+                    m_profile.addRow(m_currentRowKey, now - m_currentRowStart);
+                }
+                m_currentRowStart = now;
                 m_currentRowKey = row.getKey().toString();
             }
 
@@ -366,6 +691,9 @@ public class IJMacroNodeFactory<T extends RealType<T>>
                 settingsModels.add(m_dimSelection);
                 settingsModels.add(m_flowVarCode);
                 settingsModels.add(m_resultTableEntriesAsString);
+                settingsModels.add(m_wholeStack);
+                settingsModels.add(m_profiling);
+                settingsModels.add(m_separateProcess);
             }
         };
     }
@@ -431,6 +759,12 @@ public class IJMacroNodeFactory<T extends RealType<T>>
 
                 addDialogComponent("Additional Options", "Result Table", new DialogComponentBoolean(
                         createResultTableEntriesAsStringModel(), "Return result table entries as strings"));
+                addDialogComponent("Additional Options", "Execution", new DialogComponentBoolean(
+                        createWholeStackModel(), "Run the macro once on a stack of all selected planes"));
+                addDialogComponent("Additional Options", "Execution", new DialogComponentBoolean(
+                        createProfilingModel(), "Push timings as flow variables"));
+                addDialogComponent("Additional Options", "Execution", new DialogComponentBoolean(
+                        createSeparateProcessModel(), "Run the macro in a separate ImageJ process"));
             }
         };
     }
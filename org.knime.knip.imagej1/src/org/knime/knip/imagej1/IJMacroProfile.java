@@ -0,0 +1,169 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright (C) 2003 - 2013
+ *  University of Konstanz, Germany and
+ *  KNIME GmbH, Konstanz, Germany
+ *  Website: http://www.knime.org; Email: contact@knime.org
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME GMBH herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * --------------------------------------------------------------------- *
+ *
+ */
+package org.knime.knip.imagej1;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects where the execution of an IJ Macro node spends its time, summed up over all rows and intervals, and which
+ * row and interval took longest.
+ */
+final class IJMacroProfile {
+
+    private final AtomicLong m_wrapTime = new AtomicLong();
+
+    private final AtomicLong m_executionTime = new AtomicLong();
+
+    private final AtomicLong m_conversionTime = new AtomicLong();
+
+    private final AtomicLong m_copyTime = new AtomicLong();
+
+    private final AtomicLong m_resultTableTime = new AtomicLong();
+
+    private String m_slowestRow;
+
+    private long m_slowestRowTime = -1;
+
+    private String m_slowestInterval;
+
+    private long m_slowestIntervalTime = -1;
+
+    /**
+     * @param macro macro whose last run is added
+     */
+    void addMacroRun(final IJMacro<?> macro) {
+        m_wrapTime.addAndGet(macro.wrapTime());
+        m_executionTime.addAndGet(macro.executionTime());
+        m_conversionTime.addAndGet(macro.conversionTime());
+    }
+
+    /**
+     * @param nanos time spent copying a macro result into the output image
+     */
+    void addCopy(final long nanos) {
+        m_copyTime.addAndGet(nanos);
+    }
+
+    /**
+     * @param nanos time spent extracting a results table
+     */
+    void addResultTable(final long nanos) {
+        m_resultTableTime.addAndGet(nanos);
+    }
+
+    /**
+     * @param rowKey the row
+     * @param nanos total time spent on the row
+     */
+    synchronized void addRow(final String rowKey, final long nanos) {
+        if (nanos > m_slowestRowTime) {
+            m_slowestRow = rowKey;
+            m_slowestRowTime = nanos;
+        }
+    }
+
+    /**
+     * @param interval the row key and position of the interval
+     * @param nanos time spent on the interval
+     */
+    synchronized void addInterval(final String interval, final long nanos) {
+        if (nanos > m_slowestIntervalTime) {
+            m_slowestInterval = interval;
+            m_slowestIntervalTime = nanos;
+        }
+    }
+
+    /**
+     * @return summed up times of the single steps in milliseconds, by step
+     */
+    Map<String, Double> stepTimes() {
+        final Map<String, Double> times = new LinkedHashMap<String, Double>();
+        times.put("wrap", toMillis(m_wrapTime.get()));
+        times.put("macro", toMillis(m_executionTime.get()));
+        times.put("unwrap", toMillis(m_conversionTime.get()));
+        times.put("copy", toMillis(m_copyTime.get()));
+        times.put("result_table", toMillis(m_resultTableTime.get()));
+        return times;
+    }
+
+    /**
+     * @return key of the slowest row or <code>null</code> if no row was processed
+     */
+    synchronized String slowestRow() {
+        return m_slowestRow;
+    }
+
+    /**
+     * @return time in milliseconds spent on the slowest row
+     */
+    synchronized double slowestRowTime() {
+        return toMillis(m_slowestRowTime);
+    }
+
+    /**
+     * @return row key and position of the slowest interval or <code>null</code> if no row had more than one interval
+     */
+    synchronized String slowestInterval() {
+        return m_slowestInterval;
+    }
+
+    /**
+     * @return time in milliseconds spent on the slowest interval
+     */
+    synchronized double slowestIntervalTime() {
+        return toMillis(m_slowestIntervalTime);
+    }
+
+    private static double toMillis(final long nanos) {
+        return nanos / (double)TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright (C) 2003 - 2013
+ *  University of Konstanz, Germany and
+ *  KNIME GmbH, Konstanz, Germany
+ *  Website: http://www.knime.org; Email: contact@knime.org
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME GMBH herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * --------------------------------------------------------------------- *
+ *
+ */
+package org.knime.knip.imagej1;
+
+import java.io.BufferedReader;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import ij.IJ;
+import ij.ImagePlus;
+import ij.WindowManager;
+import ij.io.FileSaver;
+import ij.macro.Interpreter;
+import ij.measure.ResultsTable;
+
+/**
+ * Main class of the separate ImageJ process {@link IJMacroWorkerProcess} runs macros in. It only depends on IJ1 as it
+ * is started outside of KNIME.
+ *
+ * Each line read from the standard input is a request holding the tab separated paths of the macro code, the input
+ * image, the result image and the results table, followed by the title of the input image. Each request is answered
+ * by one line on the standard output, either {@link #OK} or {@link #ERROR} followed by a tab and the error message.
+ */
+public final class IJMacroWorker {
+
+    /**
+     * Reply to a successful request.
+     */
+    static final String OK = "OK";
+
+    /**
+     * Reply to a failed request.
+     */
+    static final String ERROR = "ERROR";
+
+    private IJMacroWorker() {
+        // main class
+    }
+
+    /**
+     * @param args the IJ1 plugin directory
+     * @throws IOException if the requests can't be read
+     */
+    public static void main(final String[] args) throws IOException {
+        // macros and plugins may print to the standard output, which is reserved for the replies
+        final PrintStream replies =
+                new PrintStream(new FileOutputStream(FileDescriptor.out), true, StandardCharsets.UTF_8.name());
+        System.setOut(System.err);
+
+        System.setProperty("plugins.dir", args[0]);
+        IJ.init();
+
+        final BufferedReader requests = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        String request;
+        while ((request = requests.readLine()) != null) {
+            final String[] fields = request.split("\t", 5);
+            try {
+                run(fields[0], fields[1], fields[2], fields[3], fields[4]);
+                replies.println(OK);
+            } catch (final Throwable e) {
+                e.printStackTrace();
+                replies.println(ERROR + "\t" + String.valueOf(e).replace('\n', ' ').replace('\r', ' '));
+            }
+        }
+        // plugins may have left non-daemon threads behind
+        System.exit(0);
+    }
+
+    private static void run(final String codePath, final String imgPath, final String resImgPath,
+                            final String resTablePath, final String title) throws IOException {
+        final String code = new String(Files.readAllBytes(Paths.get(codePath)), StandardCharsets.UTF_8);
+        final ImagePlus plus = IJ.openImage(imgPath);
+        if (plus == null) {
+            throw new IOException("Can't read " + imgPath);
+        }
+        plus.setTitle(title);
+
+        try {
+            Interpreter.batchMode = true;
+            Interpreter.addBatchModeImage(plus);
+            WindowManager.setTempCurrentImage(plus);
+            ResultsTable.getResultsTable().reset();
+
+            // This must be the run method with two string arguments
+            new Interpreter().run(code, "");
+
+            final ImagePlus resPlus = Interpreter.getLastBatchModeImage();
+            if (resPlus != null) {
+                saveTiff(resPlus, resImgPath);
+            }
+            final ResultsTable table = ResultsTable.getResultsTable();
+            if (table.getCounter() > 0) {
+                table.saveAs(resTablePath);
+            }
+        } finally {
+            WindowManager.setTempCurrentImage(null);
+            for (final int id : Interpreter.getBatchModeImageIDs()) {
+                final ImagePlus current = WindowManager.getImage(id);
+                if (current != null) {
+                    Interpreter.removeBatchModeImage(current);
+                    current.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the image as uncompressed TIFF, hyperstack dimensions and calibration included.
+     *
+     * @param imp the image
+     * @param path the file to write
+     * @throws IOException if the file can't be written
+     */
+    static void saveTiff(final ImagePlus imp, final String path) throws IOException {
+        final FileSaver saver = new FileSaver(imp);
+        if (!(imp.getStackSize() > 1 ? saver.saveAsTiffStack(path) : saver.saveAsTiff(path))) {
+            throw new IOException("Can't write " + path);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright (C) 2003 - 2013
+ *  University of Konstanz, Germany and
+ *  KNIME GmbH, Konstanz, Germany
+ *  Website: http://www.knime.org; Email: contact@knime.org
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME GMBH herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * --------------------------------------------------------------------- *
+ *
+ */
+package org.knime.knip.imagej1;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.knime.core.node.CanceledExecutionException;
+import org.knime.core.node.ExecutionMonitor;
+
+import ij.ImagePlus;
+
+/**
+ * Fixed number of {@link IJMacroWorkerProcess}es which run the macros of one node execution. Each run checks out an
+ * idle process and returns it afterwards, hence as many macros run concurrently as there are processes. The processes
+ * are only started with their first run.
+ */
+final class IJMacroWorkerPool {
+
+    /*
+     * Interval in which the execution is checked for cancellation while waiting for an idle process.
+     */
+    private static final long POLL_INTERVAL_MS = 50;
+
+    private final ExecutionMonitor m_exec;
+
+    private final List<IJMacroWorkerProcess> m_workers;
+
+    private final BlockingQueue<IJMacroWorkerProcess> m_idle;
+
+    /**
+     * @param pluginPath the IJ1 plugin directory
+     * @param exec checked for cancellation while a macro runs or waits for a process
+     * @param size number of processes
+     * @throws IOException if the directories for the exchanged files can't be created
+     */
+    IJMacroWorkerPool(final String pluginPath, final ExecutionMonitor exec, final int size) throws IOException {
+        m_exec = exec;
+        m_workers = new ArrayList<IJMacroWorkerProcess>(size);
+        m_idle = new LinkedBlockingQueue<IJMacroWorkerProcess>();
+        try {
+            for (int i = 0; i < size; i++) {
+                final IJMacroWorkerProcess worker = new IJMacroWorkerProcess(pluginPath, exec);
+                m_workers.add(worker);
+                m_idle.add(worker);
+            }
+        } catch (final IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Runs the macro in the next idle process.
+     *
+     * @param code the macro code
+     * @param plus the input image
+     * @return the result of the macro
+     * @throws IOException if the macro failed or the process died
+     * @throws CanceledExecutionException if the execution was canceled
+     * @see IJMacroWorkerProcess#run(String, ImagePlus)
+     */
+    IJMacroWorkerProcess.Result run(final String code, final ImagePlus plus)
+            throws IOException, CanceledExecutionException {
+        final IJMacroWorkerProcess worker = checkOut();
+        try {
+            return worker.run(code, plus);
+        } finally {
+            m_idle.add(worker);
+        }
+    }
+
+    private IJMacroWorkerProcess checkOut() throws IOException, CanceledExecutionException {
+        try {
+            IJMacroWorkerProcess worker;
+            while ((worker = m_idle.poll(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS)) == null) {
+                m_exec.checkCanceled();
+            }
+            return worker;
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for an ImageJ process", e);
+        }
+    }
+
+    /**
+     * Ends all processes and deletes their exchanged files. A process still running a macro is ended once the macro
+     * returned or the execution was canceled.
+     */
+    void close() {
+        for (final IJMacroWorkerProcess worker : m_workers) {
+            worker.close();
+        }
+    }
+}
@@ -0,0 +1,336 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright (C) 2003 - 2013
+ *  University of Konstanz, Germany and
+ *  KNIME GmbH, Konstanz, Germany
+ *  Website: http://www.knime.org; Email: contact@knime.org
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME GMBH herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * --------------------------------------------------------------------- *
+ *
+ */
+package org.knime.knip.imagej1;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.core.runtime.FileLocator;
+import org.eclipse.core.runtime.Platform;
+import org.knime.core.node.CanceledExecutionException;
+import org.knime.core.node.ExecutionMonitor;
+import org.knime.core.node.NodeLogger;
+import org.knime.core.node.workflow.NodeContext;
+import org.knime.core.util.FileUtil;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.Constants;
+import org.osgi.framework.FrameworkUtil;
+
+import ij.IJ;
+import ij.ImagePlus;
+import ij.measure.ResultsTable;
+
+/**
+ * Separate ImageJ process running IJ1 macros with {@link IJMacroWorker}. Macros and plugins only touch the global IJ1
+ * state of that process, and a plugin crashing or hanging it doesn't take down KNIME. The process runs one macro at a
+ * time. The images are exchanged as uncompressed TIFF files, the results table as CSV file.
+ */
+final class IJMacroWorkerProcess {
+
+    private static final NodeLogger LOGGER = NodeLogger.getLogger(IJMacroWorkerProcess.class);
+
+    private static final String FRAGMENT_NAME = "org.knime.knip.imagej1";
+
+    /*
+     * Interval in which the process is checked while waiting for a reply.
+     */
+    private static final long POLL_INTERVAL_MS = 5;
+
+    private final String m_pluginPath;
+
+    private final ExecutionMonitor m_exec;
+
+    private final File m_dir;
+
+    // context of the node the output of the process is logged for
+    private final NodeContext m_context;
+
+    private Process m_process;
+
+    private Writer m_requests;
+
+    private BufferedReader m_replies;
+
+    private String m_code;
+
+    /**
+     * The process itself is started with the first macro run.
+     *
+     * @param pluginPath the IJ1 plugin directory
+     * @param exec checked for cancellation while a macro runs
+     * @throws IOException if the directory for the exchanged files can't be created
+     */
+    IJMacroWorkerProcess(final String pluginPath, final ExecutionMonitor exec) throws IOException {
+        m_pluginPath = pluginPath;
+        m_exec = exec;
+        m_dir = FileUtil.createTempDir("ijmacro");
+        m_context = NodeContext.getContext();
+    }
+
+    /**
+     * Result of a macro run.
+     */
+    static final class Result {
+
+        /**
+         * the last batch mode image of the macro, <code>null</code> if it didn't leave one
+         */
+        final ImagePlus m_image;
+
+        /**
+         * the results table of the macro
+         */
+        final ResultsTable m_table;
+
+        private Result(final ImagePlus image, final ResultsTable table) {
+            m_image = image;
+            m_table = table;
+        }
+    }
+
+    /**
+     * Runs the macro in the process. If the process died, it is started again by the next run.
+     *
+     * @param code the macro code
+     * @param plus the input image
+     * @return the result of the macro
+     * @throws IOException if the macro failed or the process died
+     * @throws CanceledExecutionException if the execution was canceled, the process is killed in this case
+     */
+    synchronized Result run(final String code, final ImagePlus plus) throws IOException, CanceledExecutionException {
+        if (m_process == null) {
+            start();
+        }
+
+        final File codeFile = new File(m_dir, "macro.ijm");
+        final File imgFile = new File(m_dir, "input.tif");
+        final File resImgFile = new File(m_dir, "result.tif");
+        final File resTableFile = new File(m_dir, "results.csv");
+        if (!code.equals(m_code)) {
+            Files.write(codeFile.toPath(), code.getBytes(StandardCharsets.UTF_8));
+            m_code = code;
+        }
+        Files.deleteIfExists(resImgFile.toPath());
+        Files.deleteIfExists(resTableFile.toPath());
+
+        final String title = plus.getTitle().replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+        IJMacroWorker.saveTiff(plus, imgFile.getPath());
+
+        m_requests.write(codeFile.getPath() + "\t" + imgFile.getPath() + "\t" + resImgFile.getPath() + "\t"
+                + resTableFile.getPath() + "\t" + title + "\n");
+        m_requests.flush();
+
+        final String reply = awaitReply();
+        if (reply.startsWith(IJMacroWorker.ERROR)) {
+            throw new IOException(reply.substring(IJMacroWorker.ERROR.length()).trim());
+        }
+
+        final ImagePlus resPlus = resImgFile.exists() ? IJ.openImage(resImgFile.getPath()) : null;
+        final ResultsTable table =
+                resTableFile.exists() ? ResultsTable.open(resTableFile.getPath()) : new ResultsTable();
+        return new Result(resPlus, table);
+    }
+
+    private String awaitReply() throws IOException, CanceledExecutionException {
+        while (!m_replies.ready()) {
+            if (!m_process.isAlive()) {
+                final int exitValue = m_process.exitValue();
+                stop();
+                throw new IOException("The ImageJ process terminated unexpectedly with exit code " + exitValue
+                        + ". See the KNIME log for its output.");
+            }
+            try {
+                m_exec.checkCanceled();
+            } catch (final CanceledExecutionException e) {
+                // the macro may never return
+                stop();
+                throw e;
+            }
+            try {
+                Thread.sleep(POLL_INTERVAL_MS);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                stop();
+                throw new IOException("Interrupted while waiting for the ImageJ process", e);
+            }
+        }
+        return m_replies.readLine();
+    }
+
+    private void start() throws IOException {
+        final List<String> command = new ArrayList<String>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        command.add("-Djava.awt.headless=true");
+        command.add("-cp");
+        command.add(classPath());
+        command.add(IJMacroWorker.class.getName());
+        command.add(m_pluginPath);
+
+        m_process = new ProcessBuilder(command).directory(m_dir).start();
+        m_requests = new OutputStreamWriter(m_process.getOutputStream(), StandardCharsets.UTF_8);
+        m_replies = new BufferedReader(new InputStreamReader(m_process.getInputStream(), StandardCharsets.UTF_8));
+
+        // the output is rate limited, a macro logging in a loop mustn't flood the KNIME log
+        final InputStream output = m_process.getErrorStream();
+        final Thread logger = new Thread("ImageJ process output") {
+            @Override
+            public void run() {
+                if (m_context != null) {
+                    NodeContext.pushContext(m_context);
+                }
+                final NodeLoggerPrintStream log = new NodeLoggerPrintStream(LOGGER, NodeLogger.LEVEL.DEBUG);
+                try {
+                    final byte[] buf = new byte[8192];
+                    int read;
+                    while ((read = output.read(buf)) >= 0) {
+                        log.write(buf, 0, read);
+                    }
+                } catch (final IOException e) {
+                    // process ended
+                } finally {
+                    log.close();
+                    if (m_context != null) {
+                        NodeContext.removeLastContext();
+                    }
+                }
+            }
+        };
+        logger.setDaemon(true);
+        logger.start();
+    }
+
+    /*
+     * Closing the standard input ends the process, it is killed if it doesn't end in time.
+     */
+    private void stop() {
+        if (m_process == null) {
+            return;
+        }
+        try {
+            m_requests.close();
+        } catch (final IOException e) {
+            // process already gone
+        }
+        try {
+            if (!m_process.waitFor(1, TimeUnit.SECONDS)) {
+                m_process.destroyForcibly();
+            }
+        } catch (final InterruptedException e) {
+            m_process.destroyForcibly();
+            Thread.currentThread().interrupt();
+        }
+        m_process = null;
+        m_code = null;
+    }
+
+    /**
+     * Ends the process and deletes the exchanged files.
+     */
+    synchronized void close() {
+        stop();
+        FileUtil.deleteRecursively(m_dir);
+    }
+
+    /*
+     * IJ1 and this fragment, with their libraries, as resolved by the OSGi framework.
+     */
+    private static String classPath() throws IOException {
+        final Set<String> entries = new LinkedHashSet<String>();
+        final Bundle[] fragments = Platform.getFragments(FrameworkUtil.getBundle(IJMacroWorkerProcess.class));
+        if (fragments != null) {
+            for (final Bundle fragment : fragments) {
+                if (FRAGMENT_NAME.equals(fragment.getSymbolicName())) {
+                    addBundleClassPath(fragment, entries);
+                }
+            }
+        }
+        addBundleClassPath(FrameworkUtil.getBundle(IJ.class), entries);
+
+        final StringBuilder classPath = new StringBuilder();
+        for (final String entry : entries) {
+            if (classPath.length() > 0) {
+                classPath.append(File.pathSeparatorChar);
+            }
+            classPath.append(entry);
+        }
+        return classPath.toString();
+    }
+
+    private static void addBundleClassPath(final Bundle bundle, final Set<String> entries) throws IOException {
+        final File root = FileLocator.getBundleFile(bundle);
+        final String header = bundle.getHeaders().get(Constants.BUNDLE_CLASSPATH);
+        for (final String clause : (header == null ? "." : header).split(",")) {
+            final String entry = clause.split(";")[0].trim();
+            if (".".equals(entry)) {
+                // the classes are compiled to bin when running from the workspace
+                final File bin = new File(root, "bin");
+                entries.add((bin.isDirectory() ? bin : root).getAbsolutePath());
+            } else if (entry.length() > 0) {
+                // libraries packed into the bundle jar are extracted
+                final URL url = bundle.getEntry(entry);
+                if (url != null) {
+                    entries.add(new File(FileLocator.toFileURL(url).getPath()).getAbsolutePath());
+                }
+            }
+        }
+    }
+}
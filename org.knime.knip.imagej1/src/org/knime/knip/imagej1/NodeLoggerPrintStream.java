@@ -49,13 +49,28 @@
 package org.knime.knip.imagej1;
 
 import java.io.PrintStream;
-import java.util.Arrays;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Locale;
 
 import org.knime.core.node.NodeLogger;
+import org.knime.core.node.workflow.NodeContext;
 
 /**
- * Redirects this print streams input to the node logger.
+ * Redirects this print streams input to the node logger. The input is
+ * assembled to lines in reused buffers, each complete line is logged with the
+ * level of the stream. The lines are handed over to the node logger by a
+ * single background thread, hence printing never waits for the logger. The
+ * node context of the printing thread is restored for the delivery, such that
+ * the lines are attributed to the right node. Each stream logs at most a fixed
+ * number of lines per second, further lines are only counted and summarized by
+ * the background thread once the second has passed.
  * 
  * @author <a href="mailto:dietzc85@googlemail.com">Christian Dietz</a>
  * @author <a href="mailto:horn_martin@gmx.de">Martin Horn</a>
@@ -64,42 +79,344 @@ import org.knime.core.node.NodeLogger;
  */
 public class NodeLoggerPrintStream extends PrintStream {
 
+	/*
+	 * Number of lines a stream logs per second by default.
+	 */
+	private static final int DEFAULT_MAX_LINES_PER_SECOND = 100;
+
+	/*
+	 * Longer lines are logged in pieces of this length.
+	 */
+	private static final int MAX_LINE_LENGTH = 8192;
+
+	/*
+	 * Number of lines waiting for delivery of all streams together. Lines
+	 * not fitting into the ring are counted as suppressed.
+	 */
+	private static final int RING_CAPACITY = 1024;
+
+	private static final Object RING_LOCK = new Object();
+
+	private static final NodeLogger[] RING_LOGGERS = new NodeLogger[RING_CAPACITY];
+
+	private static final NodeLogger.LEVEL[] RING_LEVELS = new NodeLogger.LEVEL[RING_CAPACITY];
+
+	private static final String[] RING_MESSAGES = new String[RING_CAPACITY];
+
+	private static final NodeContext[] RING_CONTEXTS = new NodeContext[RING_CAPACITY];
+
+	/*
+	 * Streams with suppressed lines which haven't been summarized yet, only
+	 * accessed while holding RING_LOCK.
+	 */
+	private static final List<NodeLoggerPrintStream> PENDING = new ArrayList<NodeLoggerPrintStream>();
+
+	private static int ringHead = 0;
+
+	private static int ringSize = 0;
+
+	private static Thread deliveryThread;
+
 	private final NodeLogger m_logger;
 
 	private final NodeLogger.LEVEL m_level;
 
+	private final int m_maxLinesPerSecond;
+
+	/*
+	 * The line assembled so far.
+	 */
+	private final StringBuilder m_line = new StringBuilder(256);
+
+	/*
+	 * Bytes written but not decoded yet and the buffer they are decoded to.
+	 */
+	private final ByteBuffer m_bytes = ByteBuffer.allocate(MAX_LINE_LENGTH);
+
+	private final CharBuffer m_chars = CharBuffer.allocate(MAX_LINE_LENGTH);
+
+	private final CharsetDecoder m_decoder = Charset.defaultCharset()
+			.newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+			.onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+	/*
+	 * The rate limit and the suppressed lines are only accessed while holding
+	 * RING_LOCK, as the delivery thread summarizes them.
+	 */
+	private long m_windowStart = 0;
+
+	private int m_linesInWindow = 0;
+
+	private int m_suppressed = 0;
+
+	private NodeContext m_suppressedContext;
+
 	/**
 	 * @param logger
 	 * @param level
 	 */
 	public NodeLoggerPrintStream(final NodeLogger logger,
 			final NodeLogger.LEVEL level) {
+		this(logger, level, DEFAULT_MAX_LINES_PER_SECOND);
+	}
+
+	/**
+	 * @param logger
+	 * @param level
+	 * @param maxLinesPerSecond
+	 *            number of lines logged per second at most, further lines
+	 *            are suppressed
+	 */
+	public NodeLoggerPrintStream(final NodeLogger logger,
+			final NodeLogger.LEVEL level, final int maxLinesPerSecond) {
 		super(System.out);
 		m_logger = logger;
 		m_level = level;
+		m_maxLinesPerSecond = maxLinesPerSecond;
 	}
 
-	private void log(final String mess) {
-		switch (m_level) {
+	private static void log(final NodeLogger logger,
+			final NodeLogger.LEVEL level, final String mess) {
+		switch (level) {
+		case DEBUG:
+			logger.debug(mess);
+			break;
 		case INFO:
-			m_logger.info(mess);
+			logger.info(mess);
 			break;
 		case WARN:
-			m_logger.warn(mess);
+			logger.warn(mess);
 			break;
 		case ERROR:
-			m_logger.error(mess);
+			logger.error(mess);
+			break;
+		case FATAL:
+			logger.fatal(mess);
 			break;
 		default:
 			break;
 		}
 	}
 
+	/*
+	 * Puts a line into the ring, returns false if the ring is full.
+	 */
+	private static boolean enqueue(final NodeLogger logger,
+			final NodeLogger.LEVEL level, final String mess,
+			final NodeContext context) {
+		synchronized (RING_LOCK) {
+			if (ringSize == RING_CAPACITY) {
+				return false;
+			}
+			final int tail = (ringHead + ringSize) % RING_CAPACITY;
+			RING_LOGGERS[tail] = logger;
+			RING_LEVELS[tail] = level;
+			RING_MESSAGES[tail] = mess;
+			RING_CONTEXTS[tail] = context;
+			ringSize++;
+			wakeDeliveryThread();
+			return true;
+		}
+	}
+
+	/*
+	 * Starts the delivery thread or notifies it about new lines or newly
+	 * suppressed lines. Must be called while holding RING_LOCK.
+	 */
+	private static void wakeDeliveryThread() {
+		if (deliveryThread == null) {
+			deliveryThread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					deliver();
+				}
+			}, "NodeLoggerPrintStream delivery");
+			deliveryThread.setDaemon(true);
+			deliveryThread.start();
+		}
+		RING_LOCK.notify();
+	}
+
+	/*
+	 * Hands the lines of the ring over to their loggers and summarizes the
+	 * suppressed lines of the streams whose second has passed, runs in the
+	 * delivery thread.
+	 */
+	private static void deliver() {
+		while (true) {
+			final NodeLogger logger;
+			final NodeLogger.LEVEL level;
+			final String mess;
+			final NodeContext context;
+			synchronized (RING_LOCK) {
+				while (ringSize == 0) {
+					final long wait = summarizeExpired();
+					if (ringSize > 0) {
+						break;
+					}
+					try {
+						RING_LOCK.wait(wait);
+					} catch (final InterruptedException e) {
+						// keep delivering
+					}
+				}
+				logger = RING_LOGGERS[ringHead];
+				level = RING_LEVELS[ringHead];
+				mess = RING_MESSAGES[ringHead];
+				context = RING_CONTEXTS[ringHead];
+				RING_LOGGERS[ringHead] = null;
+				RING_LEVELS[ringHead] = null;
+				RING_MESSAGES[ringHead] = null;
+				RING_CONTEXTS[ringHead] = null;
+				ringHead = (ringHead + 1) % RING_CAPACITY;
+				ringSize--;
+			}
+			if (context != null) {
+				NodeContext.pushContext(context);
+			}
+			try {
+				log(logger, level, mess);
+			} finally {
+				if (context != null) {
+					NodeContext.removeLastContext();
+				}
+			}
+		}
+	}
+
+	/*
+	 * Summarizes the suppressed lines of the streams whose second has passed.
+	 * Returns the milliseconds until the second of the next stream passes, 0
+	 * if there is none. Must be called while holding RING_LOCK.
+	 */
+	private static long summarizeExpired() {
+		final long now = System.currentTimeMillis();
+		long wait = 0;
+		final Iterator<NodeLoggerPrintStream> it = PENDING.iterator();
+		while (it.hasNext()) {
+			final NodeLoggerPrintStream stream = it.next();
+			final long remaining = stream.m_windowStart + 1000 - now;
+			if (remaining > 0) {
+				wait = wait == 0 ? remaining : Math.min(wait, remaining);
+			} else if (stream.enqueueSummary()) {
+				it.remove();
+			} else {
+				// the ring is full, the summary is retried once it has been
+				// delivered
+				return 0;
+			}
+		}
+		return wait;
+	}
+
+	/*
+	 * Logs the assembled line unless the stream exceeds its lines per second.
+	 */
+	private void endLine() {
+		decodeBytes();
+		if (m_line.length() == 0) {
+			return;
+		}
+		final String mess = m_line.toString();
+		m_line.setLength(0);
+
+		final NodeContext context = NodeContext.getContext();
+		synchronized (RING_LOCK) {
+			final long now = System.currentTimeMillis();
+			if (now - m_windowStart >= 1000) {
+				summarizeSuppressed();
+				m_windowStart = now;
+				m_linesInWindow = 0;
+			}
+			if (m_linesInWindow >= m_maxLinesPerSecond
+					|| !enqueue(m_logger, m_level, mess, context)) {
+				if (m_suppressed++ == 0) {
+					PENDING.add(this);
+					// the delivery thread may wait without timeout, it has
+					// to switch to waiting for the end of this second
+					wakeDeliveryThread();
+				}
+				m_suppressedContext = context;
+			} else {
+				m_linesInWindow++;
+			}
+		}
+	}
+
+	private void summarizeSuppressed() {
+		synchronized (RING_LOCK) {
+			if (m_suppressed > 0 && enqueueSummary()) {
+				PENDING.remove(this);
+			}
+		}
+	}
+
+	/*
+	 * Puts the number of suppressed lines into the ring. Must be called while
+	 * holding RING_LOCK.
+	 */
+	private boolean enqueueSummary() {
+		if (!enqueue(m_logger, m_level, m_suppressed
+				+ " further lines have been suppressed.", m_suppressedContext)) {
+			return false;
+		}
+		m_suppressed = 0;
+		m_suppressedContext = null;
+		return true;
+	}
+
+	/*
+	 * Decodes the bytes written so far and appends them to the line. An
+	 * incomplete multi byte character is kept for the next call.
+	 */
+	private void decodeBytes() {
+		if (m_bytes.position() == 0) {
+			return;
+		}
+		m_bytes.flip();
+		m_decoder.decode(m_bytes, m_chars, false);
+		m_bytes.compact();
+		m_chars.flip();
+		m_line.append(m_chars);
+		m_chars.clear();
+	}
+
+	private void writeByte(final int b) {
+		if (b == '\n') {
+			endLine();
+		} else if (b != '\r') {
+			if (!m_bytes.hasRemaining()) {
+				decodeBytes();
+				if (m_line.length() >= MAX_LINE_LENGTH) {
+					endLine();
+				}
+			}
+			m_bytes.put((byte) b);
+		}
+	}
+
+	private void appendText(final CharSequence text) {
+		decodeBytes();
+		final int length = text.length();
+		for (int i = 0; i < length; i++) {
+			final char c = text.charAt(i);
+			if (c == '\n') {
+				endLine();
+			} else if (c != '\r') {
+				m_line.append(c);
+				if (m_line.length() >= MAX_LINE_LENGTH) {
+					endLine();
+				}
+			}
+		}
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
 	public PrintStream append(final char c) {
+		print(c);
 		return this;
 	}
 
@@ -107,8 +424,9 @@ public class NodeLoggerPrintStream extends PrintStream {
 	 * {@inheritDoc}
 	 */
 	@Override
-	public PrintStream append(final CharSequence csq, final int start,
-			final int end) {
+	public synchronized PrintStream append(final CharSequence csq,
+			final int start, final int end) {
+		appendText(csq == null ? "null" : csq.subSequence(start, end));
 		return this;
 	}
 
@@ -116,7 +434,8 @@ public class NodeLoggerPrintStream extends PrintStream {
 	 * {@inheritDoc}
 	 */
 	@Override
-	public PrintStream append(final CharSequence csq) {
+	public synchronized PrintStream append(final CharSequence csq) {
+		appendText(csq == null ? "null" : csq);
 		return this;
 	}
 
@@ -133,23 +452,25 @@ public class NodeLoggerPrintStream extends PrintStream {
 	 */
 	@Override
 	public void close() {
-		//
+		flush();
 	}
 
 	/**
-	 * {@inheritDoc}
+	 * Logs the line assembled so far and the number of suppressed lines.
 	 */
 	@Override
-	public void flush() {
-		//
+	public synchronized void flush() {
+		endLine();
+		summarizeSuppressed();
 	}
 
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
-	public PrintStream format(final Locale l, final String format,
-			final Object... args) {
+	public synchronized PrintStream format(final Locale l,
+			final String format, final Object... args) {
+		appendText(String.format(l, format, args));
 		return this;
 	}
 
@@ -157,7 +478,9 @@ public class NodeLoggerPrintStream extends PrintStream {
 	 * {@inheritDoc}
 	 */
 	@Override
-	public PrintStream format(final String format, final Object... args) {
+	public synchronized PrintStream format(final String format,
+			final Object... args) {
+		appendText(String.format(format, args));
 		return this;
 	}
 
@@ -165,72 +488,82 @@ public class NodeLoggerPrintStream extends PrintStream {
 	 * {@inheritDoc}
 	 */
 	@Override
-	public void print(final boolean x) {
-		log(Boolean.toString(x));
+	public synchronized void print(final boolean x) {
+		decodeBytes();
+		m_line.append(x);
 	}
 
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
-	public void print(final char x) {
-		log(Character.toString(x));
+	public synchronized void print(final char x) {
+		if (x == '\n') {
+			endLine();
+		} else if (x != '\r') {
+			decodeBytes();
+			m_line.append(x);
+		}
 	}
 
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
-	public void print(final char[] x) {
-		log(new String(x));
+	public synchronized void print(final char[] x) {
+		appendText(CharBuffer.wrap(x));
 	}
 
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
-	public void print(final double x) {
-		log(Double.toString(x));
+	public synchronized void print(final double x) {
+		decodeBytes();
+		m_line.append(x);
 	}
 
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
-	public void print(final float x) {
-		log(Float.toString(x));
+	public synchronized void print(final float x) {
+		decodeBytes();
+		m_line.append(x);
 	}
 
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
-	public void print(final int x) {
-		log(Integer.toString(x));
+	public synchronized void print(final int x) {
+		decodeBytes();
+		m_line.append(x);
 	}
 
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
-	public void print(final long x) {
-		log(Long.toString(x));
+	public synchronized void print(final long x) {
+		decodeBytes();
+		m_line.append(x);
 	}
 
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
-	public void print(final Object x) {
-		log(x.toString());
+	public synchronized void print(final Object x) {
+		appendText(String.valueOf(x));
 	}
 
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
-	public void print(final String x) {
-		log(x);
+	public synchronized void print(final String x) {
+		appendText(x == null ? "null" : x);
 	}
 
 	/**
@@ -239,7 +572,7 @@ public class NodeLoggerPrintStream extends PrintStream {
 	@Override
 	public PrintStream printf(final Locale l, final String format,
 			final Object... args) {
-		return this;
+		return format(l, format, args);
 	}
 
 	/**
@@ -247,103 +580,115 @@ public class NodeLoggerPrintStream extends PrintStream {
 	 */
 	@Override
 	public PrintStream printf(final String format, final Object... args) {
-		return this;
+		return format(format, args);
 	}
 
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
-	public void println() {
-		//
+	public synchronized void println() {
+		endLine();
 	}
 
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
-	public void println(final boolean x) {
-		log(Boolean.toString(x));
+	public synchronized void println(final boolean x) {
+		print(x);
+		endLine();
 	}
 
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
-	public void println(final char x) {
-		log(Character.toString(x));
+	public synchronized void println(final char x) {
+		print(x);
+		endLine();
 	}
 
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
-	public void println(final char[] x) {
-		log(new String(x));
+	public synchronized void println(final char[] x) {
+		print(x);
+		endLine();
 	}
 
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
-	public void println(final double x) {
-		log(Double.toString(x));
+	public synchronized void println(final double x) {
+		print(x);
+		endLine();
 	}
 
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
-	public void println(final float x) {
-		log(Float.toString(x));
+	public synchronized void println(final float x) {
+		print(x);
+		endLine();
 	}
 
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
-	public void println(final int x) {
-		log(Integer.toString(x));
+	public synchronized void println(final int x) {
+		print(x);
+		endLine();
 	}
 
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
-	public void println(final long x) {
-		log(Long.toString(x));
+	public synchronized void println(final long x) {
+		print(x);
+		endLine();
 	}
 
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
-	public void println(final Object x) {
-		log(x.toString());
+	public synchronized void println(final Object x) {
+		print(x);
+		endLine();
 	}
 
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
-	public void println(final String x) {
-		m_logger.error(x);
+	public synchronized void println(final String x) {
+		print(x);
+		endLine();
 	}
 
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
-	public void write(final byte[] buf, final int off, final int len) {
-		log(new String(Arrays.copyOfRange(buf, off, len)));
+	public synchronized void write(final byte[] buf, final int off,
+			final int len) {
+		for (int i = off; i < off + len; i++) {
+			writeByte(buf[i]);
+		}
 	}
 
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
-	public void write(final int b) {
-		log(Integer.toString(b));
+	public synchronized void write(final int b) {
+		writeByte(b);
 	}
 
 }
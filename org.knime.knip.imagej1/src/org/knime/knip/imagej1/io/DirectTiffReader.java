@@ -0,0 +1,299 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright (C) 2003 - 2013
+ *  University of Konstanz, Germany and
+ *  KNIME GmbH, Konstanz, Germany
+ *  Website: http://www.knime.org; Email: contact@knime.org
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME GMBH herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * --------------------------------------------------------------------- *
+ *
+ */
+package org.knime.knip.imagej1.io;
+
+import ij.io.FileInfo;
+import ij.io.TiffDecoder;
+import ij.measure.Calibration;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.imagej.ImgPlus;
+
+/**
+ * Reads uncompressed gray value TIFFs by reading the pixel data of the file directly. Only the {@link FileInfo}s of
+ * the file are decoded by ImageJ, the rows of the planes are then read from the file channel into one reused heap
+ * buffer and copied into the planes of the result. Files which can not be read this way are left to ImageJ.
+ */
+final class DirectTiffReader {
+
+    private DirectTiffReader() {
+        // utility class
+    }
+
+    /**
+     * @param path the file to read
+     * @return true, if the file is a TIFF according to its suffix
+     */
+    static boolean isTiff(final String path) {
+        final String lower = path.toLowerCase();
+        return lower.endsWith(".tif") || lower.endsWith(".tiff");
+    }
+
+    /**
+     * Reads the given TIFF by reading its pixel data directly.
+     *
+     * @param path the TIFF to read
+     * @param selection the part of the image to read or <code>null</code> for the whole image
+     * @return the image or <code>null</code>, if the file is compressed or its pixel type is not supported
+     * @throws IOException if the file can not be read
+     */
+    @SuppressWarnings("rawtypes")
+    static ImgPlus read(final String path, final ReadSelection selection) throws IOException {
+        final File file = new File(path);
+        final FileInfo[] infos = new TiffDecoder(file.getParent() + File.separator, file.getName()).getTiffInfo();
+        if (infos == null || infos.length == 0 || !isSupported(infos)) {
+            return null;
+        }
+
+        final FileInfo fi = infos[0];
+        final int bytesPerPixel = fi.getBytesPerPixel();
+        final long planeBytes = (long)fi.width * fi.height * bytesPerPixel;
+        if (planeBytes > Integer.MAX_VALUE) {
+            return null;
+        }
+        final long[] offsets = planeOffsets(infos);
+
+        final RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            final FileChannel channel = raf.getChannel();
+            final long fileSize = channel.size();
+            for (final long offset : offsets) {
+                if (offset < 0 || offset + planeBytes > fileSize) {
+                    return null;
+                }
+            }
+
+            final int[] czt = getHyperstackDimensions(fi.description, offsets.length);
+            final ReadSelection sel = selection == null ? new ReadSelection("", "", "", 0, 0, 0, 0) : selection;
+            final int[] channels = sel.channels(czt[0]);
+            final int[] slices = sel.slices(czt[1]);
+            final int[] frames = sel.frames(czt[2]);
+            final int[] crop = sel.crop(fi.width, fi.height);
+            final int cropSize = crop[2] * crop[3];
+
+            // if the selected rectangle spans whole rows, it is contiguous in the file and read at once
+            final boolean contiguous = crop[2] == fi.width;
+            final int chunkRows = contiguous ? crop[3] : 1;
+            final ByteBuffer buffer = ByteBuffer.allocate(chunkRows * crop[2] * bytesPerPixel);
+            buffer.order(fi.intelByteOrder ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+
+            final List<Object> planes = new ArrayList<Object>(channels.length * slices.length * frames.length);
+            for (final int t : frames) {
+                for (final int z : slices) {
+                    for (final int c : channels) {
+                        final long offset = offsets[c + czt[0] * (z + czt[1] * t)];
+
+                        final Object pixels;
+                        switch (fi.fileType) {
+                            case FileInfo.GRAY8:
+                                pixels = new byte[cropSize];
+                                break;
+                            case FileInfo.GRAY16_UNSIGNED:
+                                pixels = new short[cropSize];
+                                break;
+                            default:
+                                pixels = new float[cropSize];
+                                break;
+                        }
+
+                        // only the rows of the selected rectangle are read from the file
+                        for (int row = 0; row < crop[3]; row += chunkRows) {
+                            readFully(channel, buffer,
+                                      offset + ((long)(crop[1] + row) * fi.width + crop[0]) * bytesPerPixel);
+                            final int length = chunkRows * crop[2];
+                            switch (fi.fileType) {
+                                case FileInfo.GRAY8:
+                                    buffer.get((byte[])pixels, row * crop[2], length);
+                                    break;
+                                case FileInfo.GRAY16_UNSIGNED:
+                                    buffer.asShortBuffer().get((short[])pixels, row * crop[2], length);
+                                    break;
+                                default:
+                                    buffer.asFloatBuffer().get((float[])pixels, row * crop[2], length);
+                                    break;
+                            }
+                        }
+                        planes.add(pixels);
+                    }
+                }
+            }
+
+            return IJReadFileImageTable.createImgPlus(path, planes, crop[2], crop[3], channels.length,
+                                                      slices.length, frames.length, calibration(fi));
+        } finally {
+            raf.close();
+        }
+    }
+
+    /*
+     * Fills the buffer with the bytes of the file starting at the given position and flips it for reading.
+     */
+    private static void readFully(final FileChannel channel, final ByteBuffer buffer, final long position)
+            throws IOException {
+        buffer.clear();
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of file at position " + (position + buffer.position()) + ".");
+            }
+        }
+        buffer.flip();
+    }
+
+    /**
+     * @param infos the file infos of a TIFF
+     * @return the offsets of all planes of the TIFF. ImageJ writes hyperstacks as one image with contiguous planes,
+     *         other stacks have an IFD for each plane.
+     */
+    static long[] planeOffsets(final FileInfo[] infos) {
+        final FileInfo fi = infos[0];
+        final long[] offsets;
+        if (infos.length == 1) {
+            final long planeBytes = (long)fi.width * fi.height * fi.getBytesPerPixel();
+            offsets = new long[Math.max(1, fi.nImages)];
+            for (int i = 0; i < offsets.length; i++) {
+                offsets[i] = fi.getOffset() + i * (planeBytes + fi.gapBetweenImages);
+            }
+        } else {
+            offsets = new long[infos.length];
+            for (int i = 0; i < offsets.length; i++) {
+                offsets[i] = infos[i].getOffset();
+            }
+        }
+        return offsets;
+    }
+
+    /**
+     * @param fi the file info of a TIFF
+     * @return the calibration stored in the file info
+     */
+    static Calibration calibration(final FileInfo fi) {
+        final Calibration cal = new Calibration();
+        cal.pixelWidth = fi.pixelWidth;
+        cal.pixelHeight = fi.pixelHeight;
+        cal.pixelDepth = fi.pixelDepth;
+        cal.frameInterval = fi.frameInterval;
+        return cal;
+    }
+
+    /*
+     * Only uncompressed 8 bit, unsigned 16 bit and float images with identical planes can be read directly. Their
+     * strips have to be contiguous, just like ImageJ expects them for uncompressed images.
+     */
+    private static boolean isSupported(final FileInfo[] infos) {
+        final FileInfo first = infos[0];
+        for (final FileInfo fi : infos) {
+            if (fi.compression != FileInfo.COMPRESSION_NONE || fi.whiteIsZero || fi.width != first.width
+                    || fi.height != first.height || fi.fileType != first.fileType
+                    || fi.intelByteOrder != first.intelByteOrder) {
+                return false;
+            }
+            if (fi.fileType != FileInfo.GRAY8 && fi.fileType != FileInfo.GRAY16_UNSIGNED
+                    && fi.fileType != FileInfo.GRAY32_FLOAT) {
+                return false;
+            }
+            if (fi.stripOffsets != null && fi.stripLengths != null && fi.stripOffsets.length > 1) {
+                long expected = fi.stripOffsets[0];
+                for (int s = 0; s < fi.stripOffsets.length; s++) {
+                    if (fi.stripOffsets[s] != expected) {
+                        return false;
+                    }
+                    expected += fi.stripLengths[s];
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads the number of channels, slices and frames ImageJ stores in the description of hyperstacks. If they do not
+     * match the number of planes, all planes are treated as slices.
+     *
+     * @param description the image description of the TIFF
+     * @param numPlanes the number of planes of the TIFF
+     * @return the number of channels, slices and frames
+     */
+    static int[] getHyperstackDimensions(final String description, final int numPlanes) {
+        final int[] czt = new int[]{1, 1, 1};
+        if (description != null && description.startsWith("ImageJ")) {
+            for (final String line : description.split("\n")) {
+                final int idx = line.indexOf('=');
+                if (idx < 0) {
+                    continue;
+                }
+                final String key = line.substring(0, idx).trim();
+                try {
+                    final int value = Integer.parseInt(line.substring(idx + 1).trim());
+                    if ("channels".equals(key)) {
+                        czt[0] = value;
+                    } else if ("slices".equals(key)) {
+                        czt[1] = value;
+                    } else if ("frames".equals(key)) {
+                        czt[2] = value;
+                    }
+                } catch (final NumberFormatException e) {
+                    // not a dimension
+                }
+            }
+        }
+        if ((long)czt[0] * czt[1] * czt[2] != numPlanes) {
+            czt[0] = 1;
+            czt[1] = numPlanes;
+            czt[2] = 1;
+        }
+        return czt;
+    }
+}
@@ -49,6 +49,12 @@
 package org.knime.knip.imagej1.io;
 
 import org.knime.core.node.defaultnodesettings.DefaultNodeSettingsPane;
+import org.knime.core.node.defaultnodesettings.DialogComponentBoolean;
+import org.knime.core.node.defaultnodesettings.DialogComponentNumber;
+import org.knime.core.node.defaultnodesettings.DialogComponentString;
+import org.knime.core.node.defaultnodesettings.SettingsModelBoolean;
+import org.knime.core.node.defaultnodesettings.SettingsModelIntegerBounded;
+import org.knime.core.node.defaultnodesettings.SettingsModelString;
 import org.knime.core.node.defaultnodesettings.SettingsModelStringArray;
 import org.knime.knip.io.node.dialog.DialogComponentMultiFileChooser;
 import org.knime.knip.io.nodes.imgreader.ImgReaderNodeDialog;
@@ -79,6 +85,32 @@ public class IJImageReaderNodeDialog extends DefaultNodeSettingsPane {
         addDialogComponent(m_filechooser);
         this.closeCurrentGroup();
 
+        this.createNewGroup("Additional Options");
+        addDialogComponent(new DialogComponentBoolean(new SettingsModelBoolean(
+                IJImageReaderNodeModel.CFG_READ_TIFFS_DIRECTLY, false), "Read uncompressed TIFFs directly"));
+        addDialogComponent(new DialogComponentBoolean(new SettingsModelBoolean(
+                IJImageReaderNodeModel.CFG_INCREMENTAL, false), "Reuse images of unchanged files"));
+        this.closeCurrentGroup();
+
+        this.createNewGroup("Selection (empty or 0 for all)");
+        addDialogComponent(new DialogComponentString(new SettingsModelString(IJImageReaderNodeModel.CFG_CHANNELS,
+                ""), "Channels (e.g. 1-2,4)"));
+        addDialogComponent(new DialogComponentString(new SettingsModelString(IJImageReaderNodeModel.CFG_SLICES, ""),
+                "Slices (Z)"));
+        addDialogComponent(new DialogComponentString(new SettingsModelString(IJImageReaderNodeModel.CFG_FRAMES, ""),
+                "Frames (T)"));
+        setHorizontalPlacement(true);
+        addDialogComponent(new DialogComponentNumber(new SettingsModelIntegerBounded(
+                IJImageReaderNodeModel.CFG_CROP_X, 0, 0, Integer.MAX_VALUE), "X", 1));
+        addDialogComponent(new DialogComponentNumber(new SettingsModelIntegerBounded(
+                IJImageReaderNodeModel.CFG_CROP_Y, 0, 0, Integer.MAX_VALUE), "Y", 1));
+        addDialogComponent(new DialogComponentNumber(new SettingsModelIntegerBounded(
+                IJImageReaderNodeModel.CFG_CROP_WIDTH, 0, 0, Integer.MAX_VALUE), "Width", 1));
+        addDialogComponent(new DialogComponentNumber(new SettingsModelIntegerBounded(
+                IJImageReaderNodeModel.CFG_CROP_HEIGHT, 0, 0, Integer.MAX_VALUE), "Height", 1));
+        setHorizontalPlacement(false);
+        this.closeCurrentGroup();
+
     }
 
 }
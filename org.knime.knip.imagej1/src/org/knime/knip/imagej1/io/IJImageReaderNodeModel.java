@@ -51,6 +51,7 @@ package org.knime.knip.imagej1.io;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 
 import org.knime.core.data.DataTableSpec;
@@ -63,6 +64,9 @@ import org.knime.core.node.NodeModel;
 import org.knime.core.node.NodeSettingsRO;
 import org.knime.core.node.NodeSettingsWO;
 import org.knime.core.node.defaultnodesettings.SettingsModel;
+import org.knime.core.node.defaultnodesettings.SettingsModelBoolean;
+import org.knime.core.node.defaultnodesettings.SettingsModelIntegerBounded;
+import org.knime.core.node.defaultnodesettings.SettingsModelString;
 import org.knime.core.node.defaultnodesettings.SettingsModelStringArray;
 
 /**
@@ -85,18 +89,116 @@ public class IJImageReaderNodeModel extends NodeModel {
 	 */
 	public static final String CFG_DIR_HISTORY = "imagereader_dirhistory";
 
+	/**
+	 * Key for the settings to read uncompressed TIFFs directly. The key still
+	 * has its original name, such that existing settings are loaded.
+	 */
+	public static final String CFG_READ_TIFFS_DIRECTLY = "memory_map_tiffs";
+
+	/**
+	 * Key for the settings to reuse the images of unchanged files.
+	 */
+	public static final String CFG_INCREMENTAL = "incremental";
+
+	/**
+	 * Key for the settings holding the channels to read.
+	 */
+	public static final String CFG_CHANNELS = "channels";
+
+	/**
+	 * Key for the settings holding the slices to read.
+	 */
+	public static final String CFG_SLICES = "slices";
+
+	/**
+	 * Key for the settings holding the frames to read.
+	 */
+	public static final String CFG_FRAMES = "frames";
+
+	/**
+	 * Key for the settings holding the left border of the rectangle to read.
+	 */
+	public static final String CFG_CROP_X = "crop_x";
+
+	/**
+	 * Key for the settings holding the upper border of the rectangle to read.
+	 */
+	public static final String CFG_CROP_Y = "crop_y";
+
+	/**
+	 * Key for the settings holding the width of the rectangle to read.
+	 */
+	public static final String CFG_CROP_WIDTH = "crop_width";
+
+	/**
+	 * Key for the settings holding the height of the rectangle to read.
+	 */
+	public static final String CFG_CROP_HEIGHT = "crop_height";
+
 	/*
 	 * Settings for the file list.
 	 */
 	private final SettingsModelStringArray m_files = new SettingsModelStringArray(
 			CFG_FILE_LIST, new String[] {});
 
+	/*
+	 * Settings to read uncompressed TIFFs directly.
+	 */
+	private final SettingsModelBoolean m_readTiffsDirectly = new SettingsModelBoolean(
+			CFG_READ_TIFFS_DIRECTLY, false);
+
+	/*
+	 * Settings to reuse the images of unchanged files.
+	 */
+	private final SettingsModelBoolean m_incremental = new SettingsModelBoolean(
+			CFG_INCREMENTAL, false);
+
+	/*
+	 * Settings for the part of the images to read.
+	 */
+	private final SettingsModelString m_channels = new SettingsModelString(
+			CFG_CHANNELS, "");
+
+	private final SettingsModelString m_slices = new SettingsModelString(
+			CFG_SLICES, "");
+
+	private final SettingsModelString m_frames = new SettingsModelString(
+			CFG_FRAMES, "");
+
+	private final SettingsModelIntegerBounded m_cropX = new SettingsModelIntegerBounded(
+			CFG_CROP_X, 0, 0, Integer.MAX_VALUE);
+
+	private final SettingsModelIntegerBounded m_cropY = new SettingsModelIntegerBounded(
+			CFG_CROP_Y, 0, 0, Integer.MAX_VALUE);
+
+	private final SettingsModelIntegerBounded m_cropWidth = new SettingsModelIntegerBounded(
+			CFG_CROP_WIDTH, 0, 0, Integer.MAX_VALUE);
+
+	private final SettingsModelIntegerBounded m_cropHeight = new SettingsModelIntegerBounded(
+			CFG_CROP_HEIGHT, 0, 0, Integer.MAX_VALUE);
+
+	/*
+	 * Images decoded in earlier executions, kept across resets.
+	 */
+	private final ImageFileCache m_cache = new ImageFileCache();
+
+	/*
+	 * The selection the cached images have been read with.
+	 */
+	private String m_cachedSelection;
+
 	/*
 	 * Collection of all settings.
 	 */
 
 	private final Collection<SettingsModel> m_settingsCollection;
 
+	/*
+	 * Settings added later on, they keep their defaults when loading
+	 * workflows saved without them.
+	 */
+	private final Collection<SettingsModel> m_optionalSettings;
+
 	/**
 	 * The image out port of the Node.
 	 */
@@ -114,6 +216,16 @@ public class IJImageReaderNodeModel extends NodeModel {
 		super(0, 1);
 		m_settingsCollection = new ArrayList<SettingsModel>();
 		m_settingsCollection.add(m_files);
+		m_optionalSettings = new ArrayList<SettingsModel>();
+		m_optionalSettings.add(m_readTiffsDirectly);
+		m_optionalSettings.add(m_incremental);
+		m_optionalSettings.add(m_channels);
+		m_optionalSettings.add(m_slices);
+		m_optionalSettings.add(m_frames);
+		m_optionalSettings.add(m_cropX);
+		m_optionalSettings.add(m_cropY);
+		m_optionalSettings.add(m_cropWidth);
+		m_optionalSettings.add(m_cropHeight);
 
 	}
 
@@ -132,6 +244,8 @@ public class IJImageReaderNodeModel extends NodeModel {
 	protected DataTableSpec[] configure(final DataTableSpec[] inSpecs)
 			throws InvalidSettingsException {
 
+		createSelection();
+
 		final IJReadFileImageTable tab = new IJReadFileImageTable();
 		// tab.setDimLabelProperty(m_planeSelect.getDimLabelsAsString());
 		m_outspec = tab.getDataTableSpec();
@@ -156,10 +270,31 @@ public class IJImageReaderNodeModel extends NodeModel {
 
 		// String[] metaDataColumns =
 		// m_metadatakeys.getStringArrayValue();
-		final IJReadFileImageTable dt = new IJReadFileImageTable(exec, fnames);
+		final IJReadFileImageTable dt = new IJReadFileImageTable(exec, fnames,
+				m_readTiffsDirectly.getBooleanValue());
+		final ReadSelection selection = createSelection();
+		if (!selection.isAll()) {
+			dt.setSelection(selection);
+		}
+		if (m_incremental.getBooleanValue()) {
+			// images read with another selection can not be reused
+			if (!selection.toString().equals(m_cachedSelection)) {
+				m_cache.clear();
+				m_cachedSelection = selection.toString();
+			}
+			m_cache.retainAll(Arrays.asList(fnames));
+			dt.setImageCache(m_cache);
+		} else {
+			m_cache.clear();
+		}
 		// dt.setDimLabelProperty(m_planeSelect.getDimLabelsAsString());
-		final BufferedDataTable[] out = new BufferedDataTable[] { exec
-				.createBufferedDataTable(dt, exec) };
+		final BufferedDataTable[] out;
+		try {
+			out = new BufferedDataTable[] { exec.createBufferedDataTable(dt,
+					exec) };
+		} finally {
+			dt.close();
+		}
 		if (dt.hasAnErrorOccured()) {
 			setWarningMessage("Some errors occured opening images or image planes!");
 		}
@@ -167,6 +302,20 @@ public class IJImageReaderNodeModel extends NodeModel {
 		return out;
 	}
 
+	private ReadSelection createSelection() throws InvalidSettingsException {
+		try {
+			ReadSelection.validate(m_channels.getStringValue());
+			ReadSelection.validate(m_slices.getStringValue());
+			ReadSelection.validate(m_frames.getStringValue());
+		} catch (final IllegalArgumentException e) {
+			throw new InvalidSettingsException(e.getMessage(), e);
+		}
+		return new ReadSelection(m_channels.getStringValue(),
+				m_slices.getStringValue(), m_frames.getStringValue(),
+				m_cropX.getIntValue(), m_cropY.getIntValue(),
+				m_cropWidth.getIntValue(), m_cropHeight.getIntValue());
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -175,6 +324,9 @@ public class IJImageReaderNodeModel extends NodeModel {
 		for (final SettingsModel sm : m_settingsCollection) {
 			sm.saveSettingsTo(settings);
 		}
+		for (final SettingsModel sm : m_optionalSettings) {
+			sm.saveSettingsTo(settings);
+		}
 
 	}
 
@@ -198,6 +350,13 @@ public class IJImageReaderNodeModel extends NodeModel {
 		for (final SettingsModel sm : m_settingsCollection) {
 			sm.loadSettingsFrom(settings);
 		}
+		for (final SettingsModel sm : m_optionalSettings) {
+			try {
+				sm.loadSettingsFrom(settings);
+			} catch (final InvalidSettingsException e) {
+				// settings of an older version, keep the default
+			}
+		}
 	}
 
 	/**
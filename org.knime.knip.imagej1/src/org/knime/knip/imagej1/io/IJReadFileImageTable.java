@@ -49,22 +49,32 @@
 package org.knime.knip.imagej1.io;
 
 import ij.ImagePlus;
-import ij.process.ByteProcessor;
-import ij.process.ImageProcessor;
-import ij.process.ShortProcessor;
+import ij.ImageStack;
+import ij.measure.Calibration;
+import ij.process.ColorProcessor;
 
 import java.io.IOException;
-import java.util.Vector;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import net.imagej.ImgPlus;
 import net.imagej.axis.Axes;
 import net.imagej.axis.AxisType;
-import net.imglib2.img.Img;
+import net.imglib2.img.basictypeaccess.array.ByteArray;
+import net.imglib2.img.basictypeaccess.array.FloatArray;
+import net.imglib2.img.basictypeaccess.array.ShortArray;
 import net.imglib2.img.planar.PlanarImg;
-import net.imglib2.img.planar.PlanarImgFactory;
-import net.imglib2.type.numeric.RealType;
-import net.imglib2.type.numeric.integer.ByteType;
-import net.imglib2.type.numeric.integer.ShortType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.Fraction;
 
 import org.knime.core.data.DataCell;
 import org.knime.core.data.DataColumnSpec;
@@ -75,11 +85,16 @@ import org.knime.core.data.DataTableSpec;
 import org.knime.core.data.DataType;
 import org.knime.core.data.RowIterator;
 import org.knime.core.data.RowKey;
+import org.knime.core.data.container.CloseableRowIterator;
 import org.knime.core.data.def.DefaultRow;
 import org.knime.core.node.ExecutionContext;
+import org.knime.core.node.KNIMEConstants;
 import org.knime.core.node.NodeLogger;
+import org.knime.knip.base.KNIPConstants;
 import org.knime.knip.base.data.img.ImgPlusCell;
 import org.knime.knip.base.data.img.ImgPlusCellFactory;
+import org.knime.knip.base.exceptions.KNIPRuntimeException;
+import org.knime.knip.core.ThreadPoolExecutorService;
 
 /**
  * Implements a <code>DataTable</code> that read image data from files.
@@ -107,6 +122,11 @@ public class IJReadFileImageTable implements DataTable {
     /** Suffix of image files. */
     public static final String SUFFIX = ".tif";
 
+    /*
+     * Number of files decoded ahead of the row currently written.
+     */
+    private static final int READ_AHEAD = KNIPConstants.THREADS_PER_NODE;
+
     /*
      * Holds the file list.
      */
@@ -121,10 +141,30 @@ public class IJReadFileImageTable implements DataTable {
      * Number of errors occured, while the opening images by means of the
      * iterator.
      */
-    private int m_numErrors;
+    private final AtomicInteger m_numErrors = new AtomicInteger();
 
     private ImgPlusCellFactory m_imgCellFactory;
 
+    /*
+     * Whether the pixel data of uncompressed TIFFs is read directly instead of decoding them with ImageJ.
+     */
+    private boolean m_readTiffsDirectly;
+
+    /*
+     * Images of unchanged files decoded in earlier executions, null if every file is decoded.
+     */
+    private ImageFileCache m_cache;
+
+    /*
+     * The part of each image which is read, null if the whole image is read.
+     */
+    private ReadSelection m_selection;
+
+    /*
+     * The last iterator created, which holds the threads decoding ahead until it is exhausted or closed.
+     */
+    private CloseableRowIterator m_iterator;
+
     /**
      * Creates an new and empty ImageTable and is useful to get the table specification without actually knowing the
      * content.
@@ -140,11 +180,38 @@ public class IJReadFileImageTable implements DataTable {
      * @param filelist
      */
     public IJReadFileImageTable(final ExecutionContext exec, final String[] filelist) {
+        this(exec, filelist, false);
+    }
+
+    /**
+     * Constructor for an ImageTable.
+     *
+     * @param exec
+     * @param filelist
+     * @param readTiffsDirectly if true, the pixel data of uncompressed TIFFs is read directly instead of decoding them
+     *            with ImageJ
+     */
+    public IJReadFileImageTable(final ExecutionContext exec, final String[] filelist, final boolean readTiffsDirectly) {
 
         m_fileReferences = filelist;
         m_exec = exec;
         m_imgCellFactory = new ImgPlusCellFactory(exec);
+        m_readTiffsDirectly = readTiffsDirectly;
+
+    }
 
+    /**
+     * @param cache the images decoded before, which are reused for unchanged files, or <code>null</code>
+     */
+    void setImageCache(final ImageFileCache cache) {
+        m_cache = cache;
+    }
+
+    /**
+     * @param selection the part of each image to read or <code>null</code>, if the whole image is read
+     */
+    void setSelection(final ReadSelection selection) {
+        m_selection = selection;
     }
 
     /**
@@ -167,101 +234,303 @@ public class IJReadFileImageTable implements DataTable {
      * @return true, if an error occurred while iterating through the filelist to open the images.
      */
     public boolean hasAnErrorOccured() {
-        return m_numErrors > 0;
+        return m_numErrors.get() > 0;
     }
 
     /**
      * {@inheritDoc}
      */
+    @SuppressWarnings("rawtypes")
     @Override
     public RowIterator iterator() {
 
+        close();
         m_idx = 0;
-        m_numErrors = 0;
+        m_numErrors.set(0);
+
+        // the next files are decoded ahead on worker threads, the rows are still returned in the order of the files
+        final ExecutorService service = new ThreadPoolExecutorService(
+                KNIMEConstants.GLOBAL_THREAD_POOL.createSubPool(KNIPConstants.THREADS_PER_NODE));
+        final Deque<Future<ImgPlus>> pending = new ArrayDeque<Future<ImgPlus>>();
 
-        return new RowIterator() {
+        m_iterator = new CloseableRowIterator() {
+
+            private int m_submitted = 0;
 
             @Override
             public boolean hasNext() {
                 return m_idx < m_fileReferences.length;
             }
 
-            @SuppressWarnings({"unchecked", "rawtypes", "null"})
+            @Override
+            public void close() {
+                for (final Future<ImgPlus> f : pending) {
+                    f.cancel(true);
+                }
+                pending.clear();
+                service.shutdownNow();
+            }
+
+            @SuppressWarnings("unchecked")
             @Override
             public DataRow next() {
-                String rowHeaderName = STANDARD_ROW_PREFIX;
-                final Vector<DataCell> row = new Vector<DataCell>();
+                while (m_submitted < m_fileReferences.length && pending.size() < READ_AHEAD) {
+                    final String path = m_fileReferences[m_submitted++];
+                    pending.add(service.submit(new Callable<ImgPlus>() {
+                        @Override
+                        public ImgPlus call() {
+                            return readImage(path);
+                        }
+                    }));
+                }
 
                 // create RowHeader
                 // rowHeaderName =
                 // new
                 // File(m_files[m_pos].getReference()).getName();
-                rowHeaderName = m_fileReferences[m_idx];
-                final DataCell[] result = new DataCell[1];
-
-                final ImagePlus ijImagePlus = new ImagePlus(m_fileReferences[m_idx]);
-
-                // read image(s)
-                final int[] srcDims = ijImagePlus.getDimensions();
-
-                final AxisType[] labels = new AxisType[srcDims.length];
-                labels[0] = Axes.get("X");
-                labels[1] = Axes.get("Y");
-                // if (labels.length > 1)
-                // labels[2] = Axes.CHANNEL;
-                // for (int i = 3; i < labels.length; i++) {
-                // labels[i] = Axes.UNKNOWN;
-                // }
-
-                Img<? extends RealType<?>> resImg = null;
-
-                final ImageProcessor ip = ijImagePlus.getProcessor();
-                if (ip == null) {
-                    LOGGER.error("Can not open the file " + m_fileReferences[m_idx]);
-                    m_numErrors++;
-
-                } else {
-                    final Object pixels = ip.getPixels();
-                    if (ip instanceof ByteProcessor) {
-                        resImg = new PlanarImgFactory().create(new int[]{srcDims[0], srcDims[1]}, new ByteType());
-                    } else if (ip instanceof ShortProcessor) {
-                        resImg = new PlanarImgFactory().create(new int[]{srcDims[0], srcDims[1]}, new ShortType());
-
-                    } else {
-                        LOGGER.error("Can not open the file " + m_fileReferences[m_idx]);
-                        m_numErrors++;
-                    }
-                    System.arraycopy(pixels, 0, ((PlanarImg)resImg).getPlane(0).getCurrentStorageArray(), 0,
-                                     ip.getPixelCount());
+                final String rowHeaderName = m_fileReferences[m_idx];
 
+                DataCell cell = DataType.getMissingCell();
+                final ImgPlus img = awaitImage(pending.poll(), pending);
+                if (img != null) {
                     try {
-                        result[0] = m_imgCellFactory.createCell(new ImgPlus(resImg, m_fileReferences[m_idx], labels));
+                        cell = m_imgCellFactory.createCell(img);
                     } catch (final IOException e) {
                         LOGGER.error("Error creating ImgPlusCell.", e);
-                        result[0] = DataType.getMissingCell();
-                    }
-
-                }
-
-                for (final DataCell cell : result) {
-                    if (cell == null) {
-                        row.add(DataType.getMissingCell());
-                    } else {
-
-                        row.add(cell);
                     }
                 }
 
-                DataCell[] rowvalues = new DataCell[row.size()];
-                rowvalues = row.toArray(rowvalues);
                 m_idx++;
                 m_exec.setProgress((double)m_idx / m_fileReferences.length);
+                if (!hasNext()) {
+                    close();
+                }
 
-                return new DefaultRow(new RowKey(rowHeaderName), rowvalues);
+                return new DefaultRow(new RowKey(rowHeaderName), cell);
 
             }
 
         };
+        return m_iterator;
+
+    }
+
+    /**
+     * Stops decoding ahead for the last created iterator, e.g. if it is not iterated to the end because the execution
+     * was canceled.
+     */
+    public void close() {
+        if (m_iterator != null) {
+            m_iterator.close();
+            m_iterator = null;
+        }
+    }
+
+    @SuppressWarnings("rawtypes")
+    private ImgPlus awaitImage(final Future<ImgPlus> future, final Deque<Future<ImgPlus>> pending) {
+        try {
+            return future.get();
+        } catch (final InterruptedException e) {
+            for (final Future<ImgPlus> f : pending) {
+                f.cancel(true);
+            }
+            Thread.currentThread().interrupt();
+            throw new KNIPRuntimeException("Reading the images has been interrupted.", e);
+        } catch (final ExecutionException e) {
+            LOGGER.error("Can not open the file " + m_fileReferences[m_idx], e.getCause());
+            m_numErrors.incrementAndGet();
+            return null;
+        }
+    }
+
+    /*
+     * Returns the image of a single file, called concurrently for the files read ahead. Only new or changed files are
+     * decoded if a cache is set.
+     */
+    @SuppressWarnings("rawtypes")
+    private ImgPlus readImage(final String path) {
+        final long[] signature = m_cache == null ? null : ImageFileCache.signature(path);
+        if (signature != null) {
+            final ImgPlus cached = m_cache.get(path, signature);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        final ImgPlus img = decodeImage(path);
+        if (signature != null) {
+            m_cache.put(path, signature, img);
+        }
+        return img;
+    }
+
+    /*
+     * Decodes a single file. The pixel arrays of the stack are adopted as
+     * planes of the result without copying them, only RGB planes are split into their three channels.
+     */
+    @SuppressWarnings("rawtypes")
+    private ImgPlus decodeImage(final String path) {
+        final boolean tiff = DirectTiffReader.isTiff(path);
+        if (m_readTiffsDirectly && tiff) {
+            try {
+                final ImgPlus direct = DirectTiffReader.read(path, m_selection);
+                if (direct != null) {
+                    return direct;
+                }
+            } catch (final IOException e) {
+                LOGGER.debug("Can not read the file " + path + " directly, it is opened by ImageJ instead.", e);
+            }
+        }
+
+        // TIFFs are decoded plane by plane, hence only the selected planes are read at all
+        if (m_selection != null && tiff) {
+            try {
+                final ImgPlus selected = SelectiveTiffReader.read(path, m_selection);
+                if (selected != null) {
+                    return selected;
+                }
+            } catch (final IOException e) {
+                LOGGER.debug("Can not read the selected planes of " + path + ", it is opened as a whole instead.", e);
+            }
+        }
+
+        final ImagePlus imp = new ImagePlus(path);
+        if (imp.getProcessor() == null) {
+            LOGGER.error("Can not open the file " + path);
+            m_numErrors.incrementAndGet();
+            return null;
+        }
+        if (imp.getBitDepth() != 8 && imp.getBitDepth() != 16 && imp.getBitDepth() != 24 && imp.getBitDepth() != 32) {
+            LOGGER.error("Can not open the file " + path + ", unsupported bit depth " + imp.getBitDepth());
+            m_numErrors.incrementAndGet();
+            return null;
+        }
+
+        final ReadSelection selection =
+                m_selection == null ? new ReadSelection("", "", "", 0, 0, 0, 0) : m_selection;
+        final int[] channels = selection.channels(imp.getNChannels());
+        final int[] slices = selection.slices(imp.getNSlices());
+        final int[] frames = selection.frames(imp.getNFrames());
+        final int[] crop = selection.crop(imp.getWidth(), imp.getHeight());
+
+        final ImageStack stack = imp.getStack();
+        final List<Object> planes = new ArrayList<Object>(channels.length * slices.length * frames.length);
+        for (final int t : frames) {
+            for (final int z : slices) {
+                for (final int c : channels) {
+                    final int idx = imp.getStackIndex(c + 1, z + 1, t + 1);
+                    planes.add(ReadSelection.cropPixels(stack.getPixels(idx), imp.getWidth(), crop));
+                }
+            }
+        }
+
+        final ImgPlus img =
+                createImgPlus(path, planes, crop[2], crop[3], channels.length, slices.length, frames.length,
+                              imp.getCalibration());
+        if (img == null) {
+            LOGGER.error("Can not open the file " + path + ", the selection does not contain any pixels.");
+            m_numErrors.incrementAndGet();
+        }
+        return img;
+    }
 
+    /**
+     * Creates the image of the given planes, which are ordered channel, Z, time just like the planes of the
+     * PlanarImg. The pixel arrays are adopted without copying them, only RGB planes are split into their three
+     * channels.
+     *
+     * @param path the file the planes have been read from
+     * @param planes byte, short, float or RGB int arrays
+     * @param width the width of the planes
+     * @param height the height of the planes
+     * @param numChannels the number of channels
+     * @param numSlices the number of slices
+     * @param numFrames the number of frames
+     * @param cal the calibration of the image
+     * @return the image or <code>null</code>, if no pixels are given
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static ImgPlus createImgPlus(final String path, final List<Object> planes, final int width, final int height,
+                                 final int numChannels, final int numSlices, final int numFrames,
+                                 final Calibration cal) {
+        if (planes.isEmpty() || width == 0 || height == 0) {
+            return null;
+        }
+        final boolean rgb = planes.get(0) instanceof int[];
+
+        final List<AxisType> axes = new ArrayList<AxisType>(5);
+        final List<Long> dims = new ArrayList<Long>(5);
+        final List<Double> scales = new ArrayList<Double>(5);
+        addAxis(axes, dims, scales, Axes.X, width, cal.pixelWidth);
+        addAxis(axes, dims, scales, Axes.Y, height, cal.pixelHeight);
+        addAxis(axes, dims, scales, Axes.CHANNEL, rgb ? 3 * numChannels : numChannels, 1);
+        addAxis(axes, dims, scales, Axes.Z, numSlices, cal.pixelDepth);
+        addAxis(axes, dims, scales, Axes.TIME, numFrames, cal.frameInterval == 0 ? 1 : cal.frameInterval);
+
+        final long[] dimArray = new long[dims.size()];
+        final double[] scaleArray = new double[scales.size()];
+        for (int d = 0; d < dimArray.length; d++) {
+            dimArray[d] = dims.get(d);
+            scaleArray[d] = scales.get(d);
+        }
+
+        // the image is created without planes, all of them are set from the read ones
+        final PlanarImg resImg;
+        final Object first = planes.get(0);
+        if (first instanceof byte[]) {
+            resImg = createByteImg(dimArray);
+            for (int i = 0; i < planes.size(); i++) {
+                resImg.setPlane(i, new ByteArray((byte[])planes.get(i)));
+            }
+        } else if (first instanceof short[]) {
+            final PlanarImg<UnsignedShortType, ShortArray> shortImg =
+                    new PlanarImg<UnsignedShortType, ShortArray>(dimArray, new Fraction());
+            shortImg.setLinkedType(new UnsignedShortType(shortImg));
+            resImg = shortImg;
+            for (int i = 0; i < planes.size(); i++) {
+                resImg.setPlane(i, new ShortArray((short[])planes.get(i)));
+            }
+        } else if (first instanceof float[]) {
+            final PlanarImg<FloatType, FloatArray> floatImg =
+                    new PlanarImg<FloatType, FloatArray>(dimArray, new Fraction());
+            floatImg.setLinkedType(new FloatType(floatImg));
+            resImg = floatImg;
+            for (int i = 0; i < planes.size(); i++) {
+                resImg.setPlane(i, new FloatArray((float[])planes.get(i)));
+            }
+        } else {
+            resImg = createByteImg(dimArray);
+            final int planeSize = width * height;
+            for (int i = 0; i < planes.size(); i++) {
+                final byte[] r = new byte[planeSize];
+                final byte[] g = new byte[planeSize];
+                final byte[] b = new byte[planeSize];
+                new ColorProcessor(width, height, (int[])planes.get(i)).getRGB(r, g, b);
+                resImg.setPlane(3 * i, new ByteArray(r));
+                resImg.setPlane(3 * i + 1, new ByteArray(g));
+                resImg.setPlane(3 * i + 2, new ByteArray(b));
+            }
+        }
+
+        return new ImgPlus(resImg, path, axes.toArray(new AxisType[axes.size()]), scaleArray);
+    }
+
+    private static PlanarImg<UnsignedByteType, ByteArray> createByteImg(final long[] dims) {
+        final PlanarImg<UnsignedByteType, ByteArray> img =
+                new PlanarImg<UnsignedByteType, ByteArray>(dims, new Fraction());
+        img.setLinkedType(new UnsignedByteType(img));
+        return img;
+    }
+
+    /*
+     * X and Y are always added, all further axes only if they are not of size one.
+     */
+    static void addAxis(final List<AxisType> axes, final List<Long> dims, final List<Double> scales,
+                                final AxisType axis, final long size, final double scale) {
+        if (size > 1 || axes.size() < 2) {
+            axes.add(axis);
+            dims.add(size);
+            scales.add(scale);
+        }
     }
 }
@@ -0,0 +1,180 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright (C) 2003 - 2013
+ *  University of Konstanz, Germany and
+ *  KNIME GmbH, Konstanz, Germany
+ *  Website: http://www.knime.org; Email: contact@knime.org
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME GMBH herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * --------------------------------------------------------------------- *
+ *
+ */
+package org.knime.knip.imagej1.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.ref.SoftReference;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.CRC32;
+
+import net.imagej.ImgPlus;
+
+/**
+ * Keeps the images decoded by the reader between executions of the node. An image is only reused as long as size,
+ * modification time and a hash of the beginning and the end of its file are unchanged. The images are held softly,
+ * hence the cache never causes the node to run out of memory.
+ */
+final class ImageFileCache {
+
+    /*
+     * Number of bytes hashed at the beginning and at the end of each file.
+     */
+    private static final int HASHED_BYTES = 64 * 1024;
+
+    private final ConcurrentMap<String, Entry> m_entries = new ConcurrentHashMap<String, Entry>();
+
+    /**
+     * Determines the signature of a file, that is its size, modification time and the hash of its first and last
+     * bytes. Hashing the whole file would cost about as much as decoding it.
+     *
+     * @param path the file
+     * @return the signature or <code>null</code>, if the file can not be read
+     */
+    static long[] signature(final String path) {
+        final File file = new File(path);
+        if (!file.isFile()) {
+            return null;
+        }
+        final long size = file.length();
+        final long modified = file.lastModified();
+
+        final CRC32 crc = new CRC32();
+        try {
+            final RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try {
+                final byte[] buf = new byte[(int)Math.min(HASHED_BYTES, size)];
+                raf.readFully(buf);
+                crc.update(buf);
+                if (size > HASHED_BYTES) {
+                    raf.seek(Math.max(HASHED_BYTES, size - HASHED_BYTES));
+                    final int read = raf.read(buf);
+                    crc.update(buf, 0, Math.max(read, 0));
+                }
+            } finally {
+                raf.close();
+            }
+        } catch (final IOException e) {
+            return null;
+        }
+
+        return new long[]{size, modified, crc.getValue()};
+    }
+
+    /**
+     * @param path the file
+     * @param signature the current signature of the file
+     * @return the image decoded before or <code>null</code>, if the file has changed or the image has been collected
+     */
+    @SuppressWarnings("rawtypes")
+    ImgPlus get(final String path, final long[] signature) {
+        final Entry entry = m_entries.get(path);
+        if (entry == null || signature == null || !entry.matches(signature)) {
+            return null;
+        }
+        final ImgPlus img = entry.m_img.get();
+        if (img == null) {
+            m_entries.remove(path, entry);
+        }
+        return img;
+    }
+
+    /**
+     * @param path the file
+     * @param signature the signature of the file determined before it has been decoded
+     * @param img the decoded image
+     */
+    @SuppressWarnings("rawtypes")
+    void put(final String path, final long[] signature, final ImgPlus img) {
+        if (signature != null && img != null) {
+            m_entries.put(path, new Entry(signature, img));
+        }
+    }
+
+    /**
+     * Removes the images of all files which are not in the given list anymore.
+     *
+     * @param paths the files currently read
+     */
+    void retainAll(final Collection<String> paths) {
+        final Set<String> keep = new HashSet<String>(paths);
+        m_entries.keySet().retainAll(keep);
+    }
+
+    /**
+     * Removes all images.
+     */
+    void clear() {
+        m_entries.clear();
+    }
+
+    private static final class Entry {
+
+        private final long[] m_signature;
+
+        @SuppressWarnings("rawtypes")
+        private final SoftReference<ImgPlus> m_img;
+
+        @SuppressWarnings("rawtypes")
+        Entry(final long[] signature, final ImgPlus img) {
+            m_signature = signature;
+            m_img = new SoftReference<ImgPlus>(img);
+        }
+
+        boolean matches(final long[] signature) {
+            return Arrays.equals(m_signature, signature);
+        }
+    }
+}
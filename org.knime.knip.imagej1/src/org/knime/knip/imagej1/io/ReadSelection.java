@@ -0,0 +1,215 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright (C) 2003 - 2013
+ *  University of Konstanz, Germany and
+ *  KNIME GmbH, Konstanz, Germany
+ *  Website: http://www.knime.org; Email: contact@knime.org
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME GMBH herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * --------------------------------------------------------------------- *
+ *
+ */
+package org.knime.knip.imagej1.io;
+
+import java.lang.reflect.Array;
+import java.util.BitSet;
+
+/**
+ * The part of an image the reader decodes: a subset of the channels, ranges of the slices and frames and a rectangle
+ * of each plane. Channels, slices and frames are given as one based ranges like "1-3,5", an empty range selects all of
+ * them.
+ */
+final class ReadSelection {
+
+    private final String m_channels;
+
+    private final String m_slices;
+
+    private final String m_frames;
+
+    private final int m_x;
+
+    private final int m_y;
+
+    private final int m_width;
+
+    private final int m_height;
+
+    /**
+     * @param channels the channels to read, empty for all
+     * @param slices the slices to read, empty for all
+     * @param frames the frames to read, empty for all
+     * @param x the left border of the rectangle to read
+     * @param y the upper border of the rectangle to read
+     * @param width the width of the rectangle to read, 0 for the whole width
+     * @param height the height of the rectangle to read, 0 for the whole height
+     */
+    ReadSelection(final String channels, final String slices, final String frames, final int x, final int y,
+                  final int width, final int height) {
+        m_channels = channels.trim();
+        m_slices = slices.trim();
+        m_frames = frames.trim();
+        m_x = x;
+        m_y = y;
+        m_width = width;
+        m_height = height;
+    }
+
+    /**
+     * @return true, if the whole image is selected
+     */
+    boolean isAll() {
+        return m_channels.isEmpty() && m_slices.isEmpty() && m_frames.isEmpty() && m_x == 0 && m_y == 0
+                && m_width == 0 && m_height == 0;
+    }
+
+    /**
+     * @param numChannels the number of channels of the image
+     * @return the zero based indices of the selected channels
+     */
+    int[] channels(final int numChannels) {
+        return select(m_channels, numChannels);
+    }
+
+    /**
+     * @param numSlices the number of slices of the image
+     * @return the zero based indices of the selected slices
+     */
+    int[] slices(final int numSlices) {
+        return select(m_slices, numSlices);
+    }
+
+    /**
+     * @param numFrames the number of frames of the image
+     * @return the zero based indices of the selected frames
+     */
+    int[] frames(final int numFrames) {
+        return select(m_frames, numFrames);
+    }
+
+    /**
+     * @param width the width of the image
+     * @param height the height of the image
+     * @return x, y, width and height of the selected rectangle clipped to the image, width and height are 0 if it lies
+     *         outside of the image
+     */
+    int[] crop(final int width, final int height) {
+        final int x = Math.min(m_x, width);
+        final int y = Math.min(m_y, height);
+        final int w = m_width == 0 ? width - x : Math.min(m_width, width - x);
+        final int h = m_height == 0 ? height - y : Math.min(m_height, height - y);
+        return new int[]{x, y, w, h};
+    }
+
+    /**
+     * Checks whether the given ranges can be parsed.
+     *
+     * @param ranges ranges like "1-3,5"
+     * @throws IllegalArgumentException if the ranges are malformed
+     */
+    static void validate(final String ranges) {
+        select(ranges.trim(), 0);
+    }
+
+    /*
+     * Parses one based ranges like "1-3,5" to the sorted zero based indices smaller than size.
+     */
+    private static int[] select(final String ranges, final int size) {
+        if (ranges.isEmpty()) {
+            final int[] all = new int[size];
+            for (int i = 0; i < size; i++) {
+                all[i] = i;
+            }
+            return all;
+        }
+
+        final BitSet selected = new BitSet();
+        for (final String range : ranges.split(",")) {
+            final String[] bounds = range.split("-", -1);
+            final int from;
+            final int to;
+            try {
+                from = Integer.parseInt(bounds[0].trim());
+                to = bounds.length == 1 ? from : Integer.parseInt(bounds[1].trim());
+            } catch (final NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid range '" + range.trim() + "' in '" + ranges + "'.");
+            }
+            if (bounds.length > 2 || from < 1 || to < from) {
+                throw new IllegalArgumentException("Invalid range '" + range.trim() + "' in '" + ranges + "'.");
+            }
+            if (from <= size) {
+                selected.set(from - 1, Math.min(to, size));
+            }
+        }
+
+        final int[] indices = new int[selected.cardinality()];
+        for (int i = selected.nextSetBit(0), j = 0; i >= 0; i = selected.nextSetBit(i + 1), j++) {
+            indices[j] = i;
+        }
+        return indices;
+    }
+
+    /**
+     * Copies a rectangle out of the pixels of a plane.
+     *
+     * @param pixels the primitive pixel array of the plane
+     * @param width the width of the plane
+     * @param crop x, y, width and height of the rectangle
+     * @return the pixels of the rectangle, the given pixels if the rectangle covers the whole plane
+     */
+    static Object cropPixels(final Object pixels, final int width, final int[] crop) {
+        if (crop[0] == 0 && crop[1] == 0 && crop[2] == width && crop[3] * width == Array.getLength(pixels)) {
+            return pixels;
+        }
+        final Object res = Array.newInstance(pixels.getClass().getComponentType(), crop[2] * crop[3]);
+        for (int row = 0; row < crop[3]; row++) {
+            System.arraycopy(pixels, (crop[1] + row) * width + crop[0], res, row * crop[2], crop[2]);
+        }
+        return res;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return m_channels + ";" + m_slices + ";" + m_frames + ";" + m_x + "," + m_y + "," + m_width + "," + m_height;
+    }
+}
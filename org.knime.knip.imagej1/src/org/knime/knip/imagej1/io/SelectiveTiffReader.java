@@ -0,0 +1,170 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright (C) 2003 - 2013
+ *  University of Konstanz, Germany and
+ *  KNIME GmbH, Konstanz, Germany
+ *  Website: http://www.knime.org; Email: contact@knime.org
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME GMBH herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * --------------------------------------------------------------------- *
+ *
+ */
+package org.knime.knip.imagej1.io;
+
+import ij.io.FileInfo;
+import ij.io.ImageReader;
+import ij.io.TiffDecoder;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.imagej.ImgPlus;
+
+/**
+ * Reads a part of a TIFF by decoding only the selected planes with the {@link ImageReader} of ImageJ. Of uncompressed
+ * planes only the rows of the selected rectangle are read, compressed planes are decoded completely and cropped
+ * afterwards.
+ */
+final class SelectiveTiffReader {
+
+    private SelectiveTiffReader() {
+        // utility class
+    }
+
+    /**
+     * Reads the selected part of the given TIFF.
+     *
+     * @param path the TIFF to read
+     * @param selection the part of the image to read
+     * @return the image or <code>null</code>, if the pixel type or the layout of the file is not supported
+     * @throws IOException if the file can not be read
+     */
+    @SuppressWarnings("rawtypes")
+    static ImgPlus read(final String path, final ReadSelection selection) throws IOException {
+        final File file = new File(path);
+        final FileInfo[] infos = new TiffDecoder(file.getParent() + File.separator, file.getName()).getTiffInfo();
+        if (infos == null || infos.length == 0 || !isSupported(infos)) {
+            return null;
+        }
+
+        final FileInfo fi = infos[0];
+        final long[] offsets = DirectTiffReader.planeOffsets(infos);
+        final int[] czt = DirectTiffReader.getHyperstackDimensions(fi.description, offsets.length);
+        final int[] channels = selection.channels(czt[0]);
+        final int[] slices = selection.slices(czt[1]);
+        final int[] frames = selection.frames(czt[2]);
+        final int[] crop = selection.crop(fi.width, fi.height);
+
+        final List<Object> planes = new ArrayList<Object>(channels.length * slices.length * frames.length);
+        for (final int t : frames) {
+            for (final int z : slices) {
+                for (final int c : channels) {
+                    final int idx = c + czt[0] * (z + czt[1] * t);
+                    final FileInfo planeInfo = (FileInfo)infos[infos.length == 1 ? 0 : idx].clone();
+                    planeInfo.nImages = 1;
+                    planeInfo.longOffset = offsets[idx];
+
+                    // uncompressed planes are stored row by row, hence only the band of selected rows is read
+                    int firstRow = crop[1];
+                    if (planeInfo.compression == FileInfo.COMPRESSION_NONE) {
+                        planeInfo.longOffset += (long)crop[1] * fi.width * fi.getBytesPerPixel();
+                        planeInfo.height = crop[3];
+                        planeInfo.stripOffsets = null;
+                        planeInfo.stripLengths = null;
+                        firstRow = 0;
+                    }
+
+                    final Object pixels = readPixels(file, planeInfo);
+                    if (pixels == null) {
+                        throw new IOException("Can not read plane " + (idx + 1) + " of " + path + ".");
+                    }
+                    planes.add(ReadSelection.cropPixels(pixels, fi.width,
+                                                        new int[]{crop[0], firstRow, crop[2], crop[3]}));
+                }
+            }
+        }
+
+        return IJReadFileImageTable.createImgPlus(path, planes, crop[2], crop[3], channels.length, slices.length,
+                                                  frames.length, DirectTiffReader.calibration(fi));
+    }
+
+    /*
+     * Gray value and RGB planes of identical size and type are supported. Compressed planes need an IFD of their own.
+     */
+    private static boolean isSupported(final FileInfo[] infos) {
+        final FileInfo first = infos[0];
+        if (infos.length == 1 && first.nImages > 1 && first.compression != FileInfo.COMPRESSION_NONE) {
+            return false;
+        }
+        for (final FileInfo fi : infos) {
+            if (fi.whiteIsZero || fi.width != first.width || fi.height != first.height
+                    || fi.fileType != first.fileType) {
+                return false;
+            }
+            switch (fi.fileType) {
+                case FileInfo.GRAY8:
+                case FileInfo.GRAY16_SIGNED:
+                case FileInfo.GRAY16_UNSIGNED:
+                case FileInfo.GRAY32_INT:
+                case FileInfo.GRAY32_UNSIGNED:
+                case FileInfo.GRAY32_FLOAT:
+                case FileInfo.RGB:
+                    break;
+                default:
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    private static Object readPixels(final File file, final FileInfo fi) throws IOException {
+        final InputStream in = new BufferedInputStream(new FileInputStream(file));
+        try {
+            return new ImageReader(fi).readPixels(in, fi.getOffset());
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -49,6 +49,10 @@
 package org.knime.knip.imagej1.macro;
 
 import org.knime.knip.imagej1.IJMacroConfiguration;
+import org.knime.knip.imagej1.IJMacroOperation;
+
+import ij.ImagePlus;
+import mpicbg.ij.clahe.Flat;
 
 /**
  *
@@ -85,4 +89,33 @@ public class CLAHEIJMacro extends IJMacroConfiguration {
     protected Class<? extends IJMacroConfiguration> configrationClass() {
         return CLAHEIJMacro.class;
     }
+
+    /**
+     * Creates the operation running this snippet without the IJ1 interpreter.
+     *
+     * @param settings values of the code options
+     * @return the operation
+     */
+    public static IJMacroOperation createDirectOperation(final String[] settings) {
+        // converted the same way as done by the CLAHE plugin
+        final int blockRadius = (Integer.parseInt(settings[0]) - 1) / 2;
+        final int bins = Integer.parseInt(settings[1]) - 1;
+        final float slope = Float.parseFloat(settings[2]);
+        return new IJMacroOperation() {
+            @Override
+            public void run(final ImagePlus imp, final boolean allSlices) {
+                // the plugin works on the current processor of the image, without the "stack" option the macro
+                // command only processes the current slice
+                if (!allSlices) {
+                    Flat.getFastInstance().run(imp, blockRadius, bins, slope, null, false);
+                    return;
+                }
+                for (int s = 1; s <= imp.getStackSize(); s++) {
+                    imp.setSliceWithoutUpdate(s);
+                    Flat.getFastInstance().run(imp, blockRadius, bins, slope, null, false);
+                }
+                imp.setSliceWithoutUpdate(1);
+            }
+        };
+    }
 }
@@ -49,6 +49,11 @@
 package org.knime.knip.imagej1.macro;
 
 import org.knime.knip.imagej1.IJMacroConfiguration;
+import org.knime.knip.imagej1.IJMacroOperation;
+
+import ij.ImagePlus;
+import ij.ImageStack;
+import ij.plugin.filter.RankFilters;
 
 /**
  *
@@ -84,4 +89,26 @@ public class DespeckleIJMacro extends IJMacroConfiguration {
 	protected Class<? extends IJMacroConfiguration> configrationClass() {
 		return DespeckleIJMacro.class;
 	}
+
+	/**
+	 * Creates the operation running this snippet without the IJ1 interpreter.
+	 *
+	 * @param settings values of the code options
+	 * @return the operation
+	 */
+	public static IJMacroOperation createDirectOperation(final String[] settings) {
+		return new IJMacroOperation() {
+			@Override
+			public void run(final ImagePlus imp, final boolean allSlices) {
+				final ImageStack stack = imp.getStack();
+				final RankFilters filters = new RankFilters();
+				// without the "stack" option the macro command only processes the current slice
+				final int last = allSlices ? stack.getSize() : imp.getCurrentSlice();
+				for (int s = allSlices ? 1 : last; s <= last; s++) {
+					// Despeckle is a median filter with radius 1
+					filters.rank(stack.getProcessor(s), 1, RankFilters.MEDIAN);
+				}
+			}
+		};
+	}
 }
@@ -49,6 +49,14 @@
 package org.knime.knip.imagej1.macro;
 
 import org.knime.knip.imagej1.IJMacroConfiguration;
+import org.knime.knip.imagej1.IJMacroOperation;
+
+import ij.ImagePlus;
+import ij.ImageStack;
+import ij.plugin.filter.GaussianBlur;
+import ij.process.ByteProcessor;
+import ij.process.ColorProcessor;
+import ij.process.ImageProcessor;
 
 /**
  * 
@@ -85,4 +93,30 @@ public class GaussianBlurIJMacro extends IJMacroConfiguration {
 	protected Class<? extends IJMacroConfiguration> configrationClass() {
 		return GaussianBlurIJMacro.class;
 	}
+
+	/**
+	 * Creates the operation running this snippet without the IJ1 interpreter.
+	 *
+	 * @param settings values of the code options
+	 * @return the operation
+	 */
+	public static IJMacroOperation createDirectOperation(final String[] settings) {
+		final double sigma = Double.parseDouble(settings[0]);
+		return new IJMacroOperation() {
+			@Override
+			public void run(final ImagePlus imp, final boolean allSlices) {
+				final ImageStack stack = imp.getStack();
+				final GaussianBlur blur = new GaussianBlur();
+				// without the "stack" option the macro command only processes the current slice
+				final int last = allSlices ? stack.getSize() : imp.getCurrentSlice();
+				for (int s = allSlices ? 1 : last; s <= last; s++) {
+					final ImageProcessor ip = stack.getProcessor(s);
+					// same accuracy as used by the Gaussian Blur plugin
+					final double accuracy =
+							(ip instanceof ByteProcessor || ip instanceof ColorProcessor) ? 0.002 : 0.0002;
+					blur.blurGaussian(ip, sigma, sigma, accuracy);
+				}
+			}
+		};
+	}
 }
@@ -51,6 +51,11 @@ package org.knime.knip.imagej1.macro;
 import net.imglib2.type.numeric.RealType;
 
 import org.knime.knip.imagej1.IJMacroConfiguration;
+import org.knime.knip.imagej1.IJMacroOperation;
+
+import ij.ImagePlus;
+import ij.ImageStack;
+import ij.plugin.filter.BackgroundSubtracter;
 
 /**
  *
@@ -86,4 +91,27 @@ public class SubstractBackgroundIJMacro<I extends RealType<I>> extends IJMacroCo
     protected Class<? extends IJMacroConfiguration> configrationClass() {
         return SubstractBackgroundIJMacro.class;
     }
+
+    /**
+     * Creates the operation running this snippet without the IJ1 interpreter.
+     *
+     * @param settings values of the code options
+     * @return the operation
+     */
+    public static IJMacroOperation createDirectOperation(final String[] settings) {
+        final double radius = Double.parseDouble(settings[0]);
+        return new IJMacroOperation() {
+            @Override
+            public void run(final ImagePlus imp, final boolean allSlices) {
+                final ImageStack stack = imp.getStack();
+                final BackgroundSubtracter subtracter = new BackgroundSubtracter();
+                // without the "stack" option the macro command only processes the current slice
+                final int last = allSlices ? stack.getSize() : imp.getCurrentSlice();
+                for (int s = allSlices ? 1 : last; s <= last; s++) {
+                    // defaults of the plugin: dark background, rolling ball, presmoothing and corner correction
+                    subtracter.rollingBallBackground(stack.getProcessor(s), radius, false, false, false, true, true);
+                }
+            }
+        };
+    }
 }
@@ -55,7 +55,9 @@ import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 
 import org.knime.core.node.NodeLogger;
 
@@ -82,7 +84,10 @@ public final class FragmentWrapperUtil {
     public static final String FRAGMENT_WRAPPER_PROPERTY_FILE = "ORG.KNIME.KNIP.IMAGEJ.FRAGMENT_WRAPPER_PROPERTIES";
 
     /** plugin installer version. */
-    public static final String IMAGEJ_PLUGIN_INSTALLER_VERSION = "0.5";
+    public static final String IMAGEJ_PLUGIN_INSTALLER_VERSION = "0.6";
+
+    /** folder of the fragment holding the plugin index generated during the installation. */
+    private static final String INDEX_FOLDER = "index";
 
     /**
      * installs an ImageJ plugin into the plugins folder of an eclipse/knime installation.
@@ -115,16 +120,32 @@ public final class FragmentWrapperUtil {
             libFolder.mkdir();
             metaInfFolder.mkdir();
 
+            // copy the jar
+            final File jarCopy = new File(libFolder + File.separator + pluginName + ".jar");
+            success &= copyFile(jarFile, jarCopy);
+
+            // jars built without the SciJava annotation processor get their plugin index now, otherwise their
+            // classes would have to be scanned on each start
+            boolean generatedIndex = false;
+            if (success) {
+                try {
+                    if (!PluginIndexWriter.hasIndex(jarCopy)) {
+                        generatedIndex =
+                                PluginIndexWriter.writeIndex(jarCopy, new File(pluginFolder, INDEX_FOLDER)) > 0;
+                    }
+                } catch (final IOException e) {
+                    LOGGER.warn("the plugin index of " + pluginName + " could not be created, its plugins are "
+                            + "discovered when knime starts", e);
+                }
+            }
+
             // create manifest and marker file
             success &=
                     writeTextFile(pluginFolder, FRAGMENT_WRAPPER_PROPERTY_FILE,
                                   "ImageJ2 plugin installation (installer version " + IMAGEJ_PLUGIN_INSTALLER_VERSION
-                                          + ")");
-            success &= writeTextFile(metaInfFolder, "MANIFEST.MF", createManifestText(pluginName));
-
-            // copy the jar
-            final File jarCopy = new File(libFolder + File.separator + pluginName + ".jar");
-            success &= copyFile(jarFile, jarCopy);
+                                          + ")" + "\n" + "sha-256: " + fingerprint(jarCopy) + "\n"
+                                          + "generated plugin index: " + generatedIndex);
+            success &= writeTextFile(metaInfFolder, "MANIFEST.MF", createManifestText(pluginName, generatedIndex));
 
             if (success) {
                 LOGGER.warn("to complete the installation of " + pluginName + " please restart knime.");
@@ -134,6 +155,19 @@ public final class FragmentWrapperUtil {
         return false;
     }
 
+    /**
+     * @param pluginDir path to /knime/plugins
+     * @param pluginName the name of the plugin folder
+     * @return the class path of an installed plugin fragment i.e. the plugin jar and the generated plugin index if
+     *         there is one
+     */
+    public static File[] getFragmentClassPath(final File pluginDir, final String pluginName) {
+        final File pluginFolder = new File(pluginDir + File.separator + pluginName);
+        final File jar = new File(pluginFolder + File.separator + "lib" + File.separator + pluginName + ".jar");
+        final File index = new File(pluginFolder, INDEX_FOLDER);
+        return index.isDirectory() ? new File[]{jar, index} : new File[]{jar};
+    }
+
     /**
      * removes an ImageJ plugin from the plugins directory of an eclipse/knime installation.
      * 
@@ -164,18 +198,23 @@ public final class FragmentWrapperUtil {
      * @return true if the operation could be executed
      */
     private static boolean copyFile(final File from, final File to) {
-        InputStream in;
         try {
-            in = new FileInputStream(from);
-            final OutputStream out = new FileOutputStream(to);
-            // Transfer bytes from in to out
-            final byte[] buf = new byte[1024];
-            int len;
-            while ((len = in.read(buf)) > 0) {
-                out.write(buf, 0, len);
+            final FileChannel in = new FileInputStream(from).getChannel();
+            try {
+                final FileChannel out = new FileOutputStream(to).getChannel();
+                try {
+                    // let the channels transfer the bytes, if possible without copying them through the heap
+                    final long size = in.size();
+                    long pos = 0;
+                    while (pos < size) {
+                        pos += in.transferTo(pos, size - pos, out);
+                    }
+                } finally {
+                    out.close();
+                }
+            } finally {
+                in.close();
             }
-            in.close();
-            out.close();
         } catch (final IOException e) {
             LOGGER.error("plugin installation failed: file " + from + " could not be copied into the plugin folder "
                     + to);
@@ -184,6 +223,35 @@ public final class FragmentWrapperUtil {
         return true;
     }
 
+    /**
+     * @param file
+     * @return the hex encoded SHA-256 hash of the file content or "unknown" if it can not be computed
+     */
+    private static String fingerprint(final File file) {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            final InputStream in = new FileInputStream(file);
+            try {
+                final byte[] buf = new byte[64 * 1024];
+                int len;
+                while ((len = in.read(buf)) > 0) {
+                    digest.update(buf, 0, len);
+                }
+            } finally {
+                in.close();
+            }
+            final StringBuilder hex = new StringBuilder();
+            for (final byte b : digest.digest()) {
+                hex.append(String.format("%02x", b & 0xff));
+            }
+            return hex.toString();
+        } catch (final IOException e) {
+            return "unknown";
+        } catch (final NoSuchAlgorithmException e) {
+            return "unknown";
+        }
+    }
+
     /**
      * creates a file with the specified text.
      * 
@@ -214,13 +282,15 @@ public final class FragmentWrapperUtil {
     /**
      * @param pluginName the name of the jar file that should be installed without .jar and without parent directories
      *            e.g. org.knime.knip.myPlugin instead of C://x//y//org.knime.knip.myPlugin.jar
+     * @param generatedIndex true if the fragment holds a generated plugin index which has to be on the class path
      * @return the textual content of a manifest file that declares the specified plugin as fragment
      */
-    private static String createManifestText(final String pluginName) {
+    private static String createManifestText(final String pluginName, final boolean generatedIndex) {
         final String ret =
                 "Manifest-Version: 1.0" + "\n" + "Fragment-Host: org.knime.knip.imagej2.core;bundle-version=\"0.1.0\""
                         + "\n" + "Bundle-Version: 1.0.0." + (System.currentTimeMillis() / 1000) + "\n"
-                        + "Bundle-ClassPath: lib/" + pluginName + ".jar" + "\n"
+                        + "Bundle-ClassPath: lib/" + pluginName + ".jar" + (generatedIndex ? "," + INDEX_FOLDER : "")
+                        + "\n"
                         + "Bundle-Name: org.knime.knip.imagej.wrapped." + pluginName + "\n"
                         + "Bundle-ManifestVersion: 2" + "\n" + "Bundle-SymbolicName: org.knime.knip.imagej.wrapped."
                         + pluginName + ";singleton:=true" + "\n" + "Bundle-RequiredExecutionEnvironment: JavaSE-1.6";
@@ -49,10 +49,18 @@
 package org.knime.knip.imagej2.core;
 
 import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Enumeration;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.bushe.swing.event.EventService;
 import org.knime.core.node.NodeLogger;
@@ -73,6 +81,8 @@ import org.scijava.object.ObjectService;
 import org.scijava.options.OptionsService;
 import org.scijava.plugin.DefaultPluginFinder;
 import org.scijava.plugin.PluginIndex;
+import org.scijava.plugin.PluginInfo;
+import org.scijava.plugin.PluginService;
 import org.scijava.service.Service;
 import org.scijava.tool.ToolService;
 import org.scijava.ui.UIService;
@@ -175,8 +185,8 @@ public final class IJGateway {
         // get list of modules, and filter them to those acceptable to
         // KNIME/KNIP
         final List<ModuleInfo> moduleInfos = getModuleService().getModules();
-        m_supportedModulesInfos = findSupportedModules(moduleInfos);
-        m_delegateClassName2ModuleInfo = new HashMap<String, ModuleInfo>(m_supportedModulesInfos.size());
+        m_supportedModulesInfos = new CopyOnWriteArrayList<ModuleInfo>(findSupportedModules(moduleInfos));
+        m_delegateClassName2ModuleInfo = new ConcurrentHashMap<String, ModuleInfo>(m_supportedModulesInfos.size());
         for (final ModuleInfo info : m_supportedModulesInfos) {
             m_delegateClassName2ModuleInfo.put(info.getDelegateClassName(), info);
         }
@@ -213,6 +223,72 @@ public final class IJGateway {
         return getInstance().m_delegateClassName2ModuleInfo.get(moduleInfoDelegateClassName);
     }
 
+    /**
+     * loads the ImageJ plugins of the given class path into the running ImageJ context. Only the plugins of the class
+     * path are indexed and only their modules are tested for being supported, the modules found before are kept.
+     * Afterwards the new modules can be used by nodes without restarting KNIME, the node repository however lists them
+     * only after the next restart.
+     *
+     * @param classPath jars or class folders holding the plugins e.g. of a freshly installed plugin fragment
+     * @return the ModuleInfos of the new modules KNIME supports
+     */
+    public static synchronized List<ModuleInfo> addPlugins(final File... classPath) {
+        final IJGateway gateway = getInstance();
+
+        final URL[] urls = new URL[classPath.length];
+        try {
+            for (int i = 0; i < classPath.length; i++) {
+                urls[i] = classPath[i].toURI().toURL();
+            }
+        } catch (final MalformedURLException e) {
+            LOGGER.error("the ImageJ plugins could not be loaded " + e.getMessage());
+            return new ArrayList<ModuleInfo>();
+        }
+
+        // the child loader resolves the plugin classes against the ImageJ classes of the gateway, but it only offers
+        // its own resources such that the plugin finder reads nothing but the indexes of the new class path
+        final ClassLoader loader = new URLClassLoader(urls, gateway.getClass().getClassLoader()) {
+            @Override
+            public Enumeration<URL> getResources(final String name) throws IOException {
+                return findResources(name);
+            }
+        };
+        final PluginIndex index = new PluginIndex(new DefaultPluginFinder(loader));
+        index.discover();
+
+        final PluginService pluginService = gateway.m_imageJContext.getService(PluginService.class);
+        final List<PluginInfo<?>> newPlugins = new ArrayList<PluginInfo<?>>();
+        final Set<String> newClassNames = new HashSet<String>();
+        for (final PluginInfo<?> info : index.getAll()) {
+            if (pluginService.getPlugin(info.getClassName()) == null) {
+                newPlugins.add(info);
+                newClassNames.add(info.getClassName());
+            }
+        }
+        if (newPlugins.isEmpty()) {
+            return new ArrayList<ModuleInfo>();
+        }
+
+        // the command service creates the modules of added commands
+        pluginService.addPlugins(newPlugins);
+
+        final List<ModuleInfo> newModules = new ArrayList<ModuleInfo>();
+        for (final ModuleInfo info : gateway.getModuleService().getModules()) {
+            if (newClassNames.contains(info.getDelegateClassName())
+                    && !gateway.m_delegateClassName2ModuleInfo.containsKey(info.getDelegateClassName())) {
+                newModules.add(info);
+            }
+        }
+
+        final List<ModuleInfo> supported = gateway.findSupportedModules(newModules);
+        for (final ModuleInfo info : supported) {
+            gateway.m_delegateClassName2ModuleInfo.put(info.getDelegateClassName(), info);
+        }
+        gateway.m_supportedModulesInfos.addAll(supported);
+
+        return supported;
+    }
+
     /**
      * tests a type against the internal list of ImageJ dialog input types.
      *
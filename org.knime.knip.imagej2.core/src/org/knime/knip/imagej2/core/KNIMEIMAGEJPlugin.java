@@ -67,6 +67,9 @@ public class KNIMEIMAGEJPlugin extends AbstractUIPlugin {
     /** id of the eclipse folder path property. */
     public static final String PLUGIN_FOLDER_PATH = "IMAGEJ_BASE_PLUGIN_ECLIPSE_FOLDER_PATH";
 
+    /** id of the property which enables the lazy loading of image inputs. */
+    public static final String LAZY_IMAGE_INPUTS = "IMAGEJ_LAZY_IMAGE_INPUTS";
+
     // The shared instance.
     private static KNIMEIMAGEJPlugin plugin;
 
@@ -99,6 +102,13 @@ public class KNIMEIMAGEJPlugin extends AbstractUIPlugin {
         return "";
     }
 
+    /**
+     * @return true if image inputs which are not modified by a module should only be decoded on first pixel access
+     */
+    public static boolean isLazyImageInputs() {
+        return getDefault().getPreferenceStore().getBoolean(KNIMEIMAGEJPlugin.LAZY_IMAGE_INPUTS);
+    }
+
     /**
      * @param path string that should be tested
      * @return true if the path string points to a 'plugins' directory false for all other cases including the empty
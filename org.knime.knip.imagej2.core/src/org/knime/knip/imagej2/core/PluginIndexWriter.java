@@ -0,0 +1,268 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright (C) 2003 - 2013
+ *  University of Konstanz, Germany and
+ *  KNIME GmbH, Konstanz, Germany
+ *  Website: http://www.knime.org; Email: contact@knime.org
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME GMBH herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * --------------------------------------------------------------------- *
+ *
+ */
+package org.knime.knip.imagej2.core;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import org.knime.core.node.NodeLogger;
+import org.scijava.plugin.Plugin;
+
+/**
+ * Creates the SciJava annotation index of the {@link Plugin}s in an ImageJ plugin jar, which has been built without
+ * the annotation processor. With the index SciJava finds the plugins of the jar without scanning its classes each time
+ * KNIME starts. The index has the format of the SciJava annotation processor: one JSON object per plugin class holding
+ * the class name and the non default values of its annotation.
+ */
+final class PluginIndexWriter {
+
+    private static final NodeLogger LOGGER = NodeLogger.getLogger(PluginIndexWriter.class);
+
+    /** location of the plugin index inside of a jar or class folder. */
+    static final String PLUGIN_INDEX = "META-INF/json/" + Plugin.class.getName();
+
+    private PluginIndexWriter() {
+
+    }
+
+    /**
+     * @param jarFile an ImageJ plugin jar
+     * @return true if the jar already contains a plugin index
+     * @throws IOException if the jar can not be read
+     */
+    static boolean hasIndex(final File jarFile) throws IOException {
+        final JarFile jar = new JarFile(jarFile);
+        try {
+            return jar.getEntry(PLUGIN_INDEX) != null;
+        } finally {
+            jar.close();
+        }
+    }
+
+    /**
+     * Writes the plugin index of the given jar into the given class folder. The classes of the jar are loaded but not
+     * initialized; classes which can not be loaded are skipped.
+     *
+     * @param jarFile the ImageJ plugin jar
+     * @param classFolder the folder the index is written to
+     * @return the number of indexed plugins, nothing is written if there are none
+     * @throws IOException if the jar can not be read or the index can not be written
+     */
+    static int writeIndex(final File jarFile, final File classFolder) throws IOException {
+        final StringBuilder index = new StringBuilder();
+        int numPlugins = 0;
+
+        final JarFile jar = new JarFile(jarFile);
+        final URLClassLoader loader =
+                new URLClassLoader(new URL[]{jarFile.toURI().toURL()}, PluginIndexWriter.class.getClassLoader());
+        try {
+            final Enumeration<JarEntry> entries = jar.entries();
+            while (entries.hasMoreElements()) {
+                final String name = entries.nextElement().getName();
+                if (!name.endsWith(".class")) {
+                    continue;
+                }
+                final String className = name.substring(0, name.length() - 6).replace('/', '.');
+
+                final Plugin plugin;
+                try {
+                    plugin = Class.forName(className, false, loader).getAnnotation(Plugin.class);
+                } catch (final ClassNotFoundException e) {
+                    LOGGER.warn("Class " + className + " of " + jarFile.getName()
+                            + " could not be loaded and is not indexed: " + e.getMessage(), e);
+                    continue;
+                } catch (final LinkageError e) {
+                    LOGGER.warn("Class " + className + " of " + jarFile.getName()
+                            + " could not be linked and is not indexed: " + e.getMessage(), e);
+                    continue;
+                }
+                if (plugin == null) {
+                    continue;
+                }
+
+                final Map<String, Object> item = new TreeMap<String, Object>();
+                item.put("class", className);
+                item.put("values", adapt(plugin));
+                writeJSON(index, item);
+                index.append('\n');
+                numPlugins++;
+            }
+        } finally {
+            loader.close();
+            jar.close();
+        }
+
+        if (numPlugins > 0) {
+            final File indexFile = new File(classFolder, PLUGIN_INDEX.replace('/', File.separatorChar));
+            indexFile.getParentFile().mkdirs();
+            final Writer out = new OutputStreamWriter(new FileOutputStream(indexFile), "UTF-8");
+            try {
+                out.write(index.toString());
+            } finally {
+                out.close();
+            }
+        }
+        return numPlugins;
+    }
+
+    /*
+     * Converts the non default values of an annotation just like the SciJava annotation processor does.
+     */
+    private static Map<String, Object> adapt(final Annotation annotation) {
+        final Map<String, Object> values = new TreeMap<String, Object>();
+        for (final Method method : annotation.annotationType().getDeclaredMethods()) {
+            final Object value;
+            try {
+                value = method.invoke(annotation);
+            } catch (final Exception e) {
+                continue;
+            }
+            final Object defaultValue = method.getDefaultValue();
+            if (defaultValue != null && Arrays.deepEquals(new Object[]{value}, new Object[]{defaultValue})) {
+                continue;
+            }
+            values.put(method.getName(), adapt(value));
+        }
+        return values;
+    }
+
+    private static Object adapt(final Object value) {
+        if (value instanceof Annotation) {
+            return adapt((Annotation)value);
+        } else if (value instanceof Class) {
+            return ((Class<?>)value).getName();
+        } else if (value instanceof Enum) {
+            return ((Enum<?>)value).name();
+        } else if (value instanceof Character) {
+            return value.toString();
+        } else if (value.getClass().isArray()) {
+            final List<Object> list = new ArrayList<Object>();
+            for (int i = 0; i < Array.getLength(value); i++) {
+                list.add(adapt(Array.get(value, i)));
+            }
+            return list;
+        }
+        return value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void writeJSON(final StringBuilder out, final Object value) {
+        if (value instanceof Map) {
+            out.append('{');
+            boolean first = true;
+            for (final Map.Entry<String, Object> entry : ((Map<String, Object>)value).entrySet()) {
+                if (!first) {
+                    out.append(',');
+                }
+                first = false;
+                writeJSON(out, entry.getKey());
+                out.append(':');
+                writeJSON(out, entry.getValue());
+            }
+            out.append('}');
+        } else if (value instanceof List) {
+            out.append('[');
+            boolean first = true;
+            for (final Object element : (List<Object>)value) {
+                if (!first) {
+                    out.append(',');
+                }
+                first = false;
+                writeJSON(out, element);
+            }
+            out.append(']');
+        } else if (value instanceof Double || value instanceof Float) {
+            // JSON has no literal for infinite values, e.g. the priority Priority.FIRST_PRIORITY, they are clamped to
+            // the largest finite value of the type. Plugins using that value themselves hence end up with the same
+            // priority and keep their order only by the order of the index. NaN can't be clamped and is written as
+            // string.
+            final double d = ((Number)value).doubleValue();
+            if (Double.isNaN(d)) {
+                writeJSON(out, "NaN");
+            } else if (Double.isInfinite(d)) {
+                final double max = value instanceof Float ? Float.MAX_VALUE : Double.MAX_VALUE;
+                out.append(d > 0 ? max : -max);
+            } else {
+                out.append(value);
+            }
+        } else if (value instanceof Number || value instanceof Boolean) {
+            out.append(value);
+        } else {
+            out.append('"');
+            final String string = value.toString();
+            for (int i = 0; i < string.length(); i++) {
+                final char c = string.charAt(i);
+                if (c == '"' || c == '\\') {
+                    out.append('\\').append(c);
+                } else if (c < 0x20) {
+                    out.append(String.format("\\u%04x", (int)c));
+                } else {
+                    out.append(c);
+                }
+            }
+            out.append('"');
+        }
+    }
+}
@@ -51,9 +51,11 @@ package org.knime.knip.imagej2.core.adapter.impl;
 import org.knime.core.data.DataValue;
 import org.knime.knip.base.data.img.ImgPlusValue;
 import org.knime.knip.imagej2.core.IJGateway;
+import org.knime.knip.imagej2.core.KNIMEIMAGEJPlugin;
 import org.knime.knip.imagej2.core.adapter.DataValueConfigGuiInfos;
 import org.knime.knip.imagej2.core.adapter.IJStandardInputAdapter;
 import org.knime.knip.imagej2.core.adapter.ModuleItemDataValueConfig;
+import org.knime.knip.imagej2.core.util.LazyImg;
 import org.scijava.ItemIO;
 import org.scijava.module.Module;
 import org.scijava.module.ModuleItem;
@@ -98,6 +100,8 @@ public class DatasetInputAdapter implements IJStandardInputAdapter<Dataset> {
                 if (item.getIOType() == ItemIO.BOTH) {
                     // make copy if item is in and output
                     imgPlus = ((ImgPlusValue)dv).getImgPlusCopy();
+                } else if (KNIMEIMAGEJPlugin.isLazyImageInputs()) {
+                    imgPlus = LazyImg.wrap((ImgPlusValue)dv);
                 } else {
                     imgPlus = ((ImgPlusValue)dv).getImgPlus();
                 }
@@ -109,17 +109,17 @@ public class ImageDisplayInputAdapter implements IJStandardInputAdapter<ImageDis
 
                 final Dataset dataS = new DefaultDataset(IJGateway.getImageJContext(), imgPlus);
 
-                final DatasetView dataV = new DefaultDatasetView();
+                // headless commands only access the dataset of the display, hence the view neither creates
+                // projectors and color tables nor publishes selection events
+                final DatasetView dataV = new HeadlessDatasetView();
                 dataV.setContext(IJGateway.getImageJContext());
                 dataV.initialize(dataS);
-                dataV.setSelected(true);
-                dataV.rebuild();
 
-                final MyImageDisplay input = new MyImageDisplay();
+                final HeadlessImageDisplay input = new HeadlessImageDisplay();
                 input.setContext(IJGateway.getImageJContext());
 
                 input.add(dataV);
-                input.publicRebuild();
+                input.updateExtents();
                 module.setInput(item.getName(), input);
             }
 
@@ -141,18 +141,26 @@ public class ImageDisplayInputAdapter implements IJStandardInputAdapter<ImageDis
         };
     }
 
-    //TODO check if this is needed
     /*
-     *
-     * We need this class to access rebuild from outside. Rebuild is in turn needed to get the
-     * isDiscret / Extent calculations running. Probably there is a better way to achieve this
-     * however it works for the moment think over it with the next beta.
-     *
+     * Display which exposes rebuild() to get the isDiscrete / extent calculations running on the combined interval
+     * of its views, without any rendering.
      */
-    private class MyImageDisplay extends DefaultImageDisplay {
+    private static class HeadlessImageDisplay extends DefaultImageDisplay {
 
-        public void publicRebuild() {
+        void updateExtents() {
             rebuild();
         }
     }
+
+    /*
+     * Dataset view without any rendering state. Projector, color tables and channel ranges are only needed to
+     * display the dataset.
+     */
+    private static class HeadlessDatasetView extends DefaultDatasetView {
+
+        @Override
+        public void rebuild() {
+            // nothing to render in headless execution
+        }
+    }
 }
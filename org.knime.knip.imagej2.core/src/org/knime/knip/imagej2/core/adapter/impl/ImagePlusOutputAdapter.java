@@ -57,6 +57,7 @@ import org.knime.core.node.ExecutionContext;
 import org.knime.knip.base.data.img.ImgPlusCell;
 import org.knime.knip.base.data.img.ImgPlusCellFactory;
 import org.knime.knip.base.data.img.ImgPlusValue;
+import org.knime.knip.base.exceptions.KNIPRuntimeException;
 import org.knime.knip.imagej2.core.adapter.IJOutputAdapter;
 import org.knime.knip.imagej2.core.adapter.IJOutputAdapterInstance;
 import org.knime.knip.imagej2.core.util.IJToImg;
@@ -114,7 +115,7 @@ public class ImagePlusOutputAdapter implements IJOutputAdapter<ImagePlus> {
                 try {
                     output = factory.createCell(new ImgPlus(image));
                 } catch (final IOException e) {
-                    e.printStackTrace();
+                    throw new KNIPRuntimeException("Could not write the image cell: " + e.getMessage(), e);
                 }
 
                 return new DataCell[]{output};
@@ -60,6 +60,7 @@ import org.knime.core.node.ExecutionContext;
 import org.knime.knip.base.data.img.ImgPlusCell;
 import org.knime.knip.base.data.img.ImgPlusCellFactory;
 import org.knime.knip.base.data.img.ImgPlusValue;
+import org.knime.knip.base.exceptions.KNIPRuntimeException;
 import org.knime.knip.imagej2.core.adapter.IJOutputAdapter;
 import org.knime.knip.imagej2.core.adapter.IJOutputAdapterInstance;
 
@@ -106,7 +107,7 @@ public class ImgOutputAdapter implements IJOutputAdapter<Img> {
                 try {
                     output = factory.createCell(new ImgPlus(ijObject));
                 } catch (final IOException e) {
-                    e.printStackTrace();
+                    throw new KNIPRuntimeException("Could not write the image cell: " + e.getMessage(), e);
                 }
 
                 return new DataCell[]{output};
@@ -50,10 +50,12 @@ package org.knime.knip.imagej2.core.adapter.impl;
 
 import org.knime.core.data.DataValue;
 import org.knime.knip.base.data.img.ImgPlusValue;
+import org.knime.knip.imagej2.core.KNIMEIMAGEJPlugin;
 import org.knime.knip.imagej2.core.adapter.DataValueConfigGuiInfos;
 import org.knime.knip.imagej2.core.adapter.IJInputAdapter;
 import org.knime.knip.imagej2.core.adapter.IJStandardInputAdapter;
 import org.knime.knip.imagej2.core.adapter.ModuleItemDataValueConfig;
+import org.knime.knip.imagej2.core.util.LazyImg;
 import org.scijava.ItemIO;
 import org.scijava.module.Module;
 import org.scijava.module.ModuleItem;
@@ -95,6 +97,8 @@ public class ImgPlusInputAdapter implements IJStandardInputAdapter<ImgPlus> {
                 if (item.getIOType() == ItemIO.BOTH) {
                     // make copy if item is in and output
                     imgPlus = ((ImgPlusValue)m_dataValue).getImgPlusCopy();
+                } else if (KNIMEIMAGEJPlugin.isLazyImageInputs()) {
+                    imgPlus = LazyImg.wrap((ImgPlusValue)m_dataValue);
                 } else {
                     imgPlus = ((ImgPlusValue)m_dataValue).getImgPlus();
                 }
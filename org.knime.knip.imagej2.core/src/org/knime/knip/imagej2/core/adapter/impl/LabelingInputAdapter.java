@@ -48,10 +48,17 @@
  */
 package org.knime.knip.imagej2.core.adapter.impl;
 
+import java.lang.reflect.Array;
+
 import net.imglib2.Cursor;
 import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.planar.PlanarImg;
 import net.imglib2.roi.labeling.ImgLabeling;
 import net.imglib2.roi.labeling.LabelingType;
+import net.imglib2.type.numeric.IntegerType;
 import net.imglib2.view.Views;
 
 import org.knime.core.data.DataValue;
@@ -108,9 +115,17 @@ public class LabelingInputAdapter implements IJStandardInputAdapter<ImgLabeling>
                 module.setInput(item.getName(), lab);
             }
 
+            @SuppressWarnings("unchecked")
             private <L> RandomAccessibleInterval<LabelingType<L>>
                     copy(final RandomAccessibleInterval<LabelingType<L>> lab) {
 
+                if (lab instanceof ImgLabeling) {
+                    final RandomAccessibleInterval<LabelingType<L>> res = copyImgLabeling((ImgLabeling<L, ?>)lab);
+                    if (res != null) {
+                        return res;
+                    }
+                }
+
                 RandomAccessibleInterval<LabelingType<L>> res = KNIPGateway.ops().create().imgLabeling(lab);
 
                 Cursor<LabelingType<L>> c1 = Views.iterable(lab).cursor();
@@ -123,6 +138,53 @@ public class LabelingInputAdapter implements IJStandardInputAdapter<ImgLabeling>
                 return res;
             }
 
+            /*
+             * Copies the index image of the labeling and transfers the label sets of the mapping once, instead of
+             * adding the labels pixel by pixel. Returns null if the index image can't be copied in bulk.
+             */
+            private <L, I extends IntegerType<I>> ImgLabeling<L, I> copyImgLabeling(final ImgLabeling<L, I> lab) {
+                final RandomAccessibleInterval<I> indexImg = lab.getIndexImg();
+                if (!(indexImg instanceof Img)) {
+                    return null;
+                }
+
+                final Img<I> indexCopy = copyIndexImg((Img<I>)indexImg);
+                if (indexCopy == null) {
+                    return null;
+                }
+
+                final ImgLabeling<L, I> res = new ImgLabeling<L, I>(indexCopy);
+                res.getMapping().setLabelSets(lab.getMapping().getLabelSets());
+                return res;
+            }
+
+            @SuppressWarnings("unchecked")
+            private <I extends IntegerType<I>> Img<I> copyIndexImg(final Img<I> src) {
+                if (src instanceof ArrayImg) {
+                    final ArrayImg<I, ? extends ArrayDataAccess<?>> res =
+                            (ArrayImg<I, ? extends ArrayDataAccess<?>>)src.factory()
+                                    .create(src, src.firstElement().createVariable());
+                    copyStorage(((ArrayImg<I, ? extends ArrayDataAccess<?>>)src).update(null), res.update(null));
+                    return res;
+                } else if (src instanceof PlanarImg) {
+                    final PlanarImg<I, ? extends ArrayDataAccess<?>> planarSrc =
+                            (PlanarImg<I, ? extends ArrayDataAccess<?>>)src;
+                    final PlanarImg<I, ? extends ArrayDataAccess<?>> res =
+                            (PlanarImg<I, ? extends ArrayDataAccess<?>>)src.factory()
+                                    .create(src, src.firstElement().createVariable());
+                    for (int i = 0; i < planarSrc.numSlices(); i++) {
+                        copyStorage(planarSrc.getPlane(i), res.getPlane(i));
+                    }
+                    return res;
+                }
+                return null;
+            }
+
+            private void copyStorage(final ArrayDataAccess<?> src, final ArrayDataAccess<?> dest) {
+                final Object srcArray = src.getCurrentStorageArray();
+                System.arraycopy(srcArray, 0, dest.getCurrentStorageArray(), 0, Array.getLength(srcArray));
+            }
+
             @Override
             public void setConfigurationData(final DataValue[] dataValues) {
                 m_dataValue = dataValues[0];
@@ -60,6 +60,7 @@ import org.knime.core.node.ExecutionContext;
 import org.knime.knip.base.data.labeling.LabelingCell;
 import org.knime.knip.base.data.labeling.LabelingCellFactory;
 import org.knime.knip.base.data.labeling.LabelingValue;
+import org.knime.knip.base.exceptions.KNIPRuntimeException;
 import org.knime.knip.core.awt.labelingcolortable.DefaultLabelingColorTable;
 import org.knime.knip.core.data.img.DefaultLabelingMetadata;
 import org.knime.knip.imagej2.core.adapter.IJOutputAdapter;
@@ -110,7 +111,7 @@ public class LabelingOutputAdapter implements IJOutputAdapter<ImgLabeling> {
                             factory.createCell(ijObject, new DefaultLabelingMetadata(ijObject.numDimensions(),
                                     new DefaultLabelingColorTable()));
                 } catch (final IOException e) {
-                    e.printStackTrace();
+                    throw new KNIPRuntimeException("Could not write the labeling cell: " + e.getMessage(), e);
                 }
 
                 return new DataCell[]{output};
@@ -90,9 +90,6 @@ public class ByteArrayOutputAdapter implements IJOutputAdapter<byte[]> {
 
             @Override
             public DataCell[] getDataCells(final byte[] ijObject) {
-                DoubleVectorCellFactory fac = new DoubleVectorCellFactory();
-                fac.init(exec);
-
                 final double[] out = new double[ijObject.length];
                 for (int d = 0; d < ijObject.length; d++) {
                     out[d] = ijObject[d];
@@ -97,8 +97,6 @@ public class DoubleArrayOutputAdapter implements IJOutputAdapter<double[]> {
 
             @Override
             public DataCell[] getDataCells(final double[] ijObject) {
-                DoubleVectorCellFactory fac = new DoubleVectorCellFactory();
-                fac.init(exec);
                 return new DataCell[]{DoubleVectorCellFactory.createCell((ijObject))};
             }
         };
@@ -90,9 +90,6 @@ public class FloatArrayOutputAdapter implements IJOutputAdapter<float[]> {
 
             @Override
             public DataCell[] getDataCells(final float[] ijObject) {
-                DoubleVectorCellFactory fac = new DoubleVectorCellFactory();
-                fac.init(exec);
-
                 final double[] out = new double[ijObject.length];
                 for (int d = 0; d < ijObject.length; d++) {
                     out[d] = ijObject[d];
@@ -90,9 +90,6 @@ public class IntegerArrayOutputAdapter implements IJOutputAdapter<int[]> {
 
             @Override
             public DataCell[] getDataCells(final int[] ijObject) {
-                DoubleVectorCellFactory fac = new DoubleVectorCellFactory();
-                fac.init(exec);
-
                 final double[] out = new double[ijObject.length];
                 for (int d = 0; d < ijObject.length; d++) {
                     out[d] = ijObject[d];
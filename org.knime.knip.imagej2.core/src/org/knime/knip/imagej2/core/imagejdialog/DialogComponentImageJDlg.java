@@ -48,6 +48,7 @@
  */
 package org.knime.knip.imagej2.core.imagejdialog;
 
+import java.util.HashMap;
 import java.util.Map;
 
 import org.knime.core.node.InvalidSettingsException;
@@ -130,6 +131,18 @@ public class DialogComponentImageJDlg extends DialogComponent {
         }
     }
 
+    /**
+     * @return the values currently shown by the widgets by the names of their module items, also if they haven't been
+     *         saved to the model yet
+     */
+    public Map<String, Object> getCurrentValues() {
+        final Map<String, Object> values = new HashMap<String, Object>();
+        for (final WidgetModel model : m_inputPanel.getWidgetModels().values()) {
+            values.put(model.getItem().getName(), model.getValue());
+        }
+        return values;
+    }
+
     /**
      * not implemented
      */
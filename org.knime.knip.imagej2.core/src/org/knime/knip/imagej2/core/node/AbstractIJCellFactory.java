@@ -52,6 +52,8 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 import org.knime.core.data.DataCell;
 import org.knime.core.data.DataRow;
@@ -91,17 +93,22 @@ public abstract class AbstractIJCellFactory implements CellFactory {
     private static final NodeLogger LOGGER = NodeLogger.getLogger(AbstractIJCellFactory.class);
 
     /** counts the number of errors that resulted in missing cell output. */
-    private int m_missingCellCount;
+    private final AtomicInteger m_missingCellCount;
 
     private final ExecutionContext m_exec;
 
+    /** output adapter instances per output type, shared by all processed rows. */
+    @SuppressWarnings("rawtypes")
+    private final Map<Class<?>, IJOutputAdapterInstance> m_adapterInstances =
+            new HashMap<Class<?>, IJOutputAdapterInstance>();
+
     /**
      * Create a new {@link AbstractIJCellFactory} which uses the given {@link ExecutionContext}
      *
      * @param exec
      */
     public AbstractIJCellFactory(final ExecutionContext exec) {
-        m_missingCellCount = 0;
+        m_missingCellCount = new AtomicInteger();
         m_exec = exec;
     }
 
@@ -109,7 +116,27 @@ public abstract class AbstractIJCellFactory implements CellFactory {
      * @return the amount of cells that could not be processed and have been set to MissingCell.
      */
     public int getMissingCellCount() {
-        return m_missingCellCount;
+        return m_missingCellCount.get();
+    }
+
+    /**
+     * Executes the module(s) for the given row on the calling thread and returns a task that converts the results into
+     * {@link DataCell}s. This allows the (potentially expensive) serialization of the results to be done on a
+     * different thread while the next row is processed, see {@link PipelinedRowWriter}. Errors are reported as
+     * warnings and result in missing cells. Only if an output adapter can't write a cell, the returned task fails
+     * with a {@link org.knime.knip.base.exceptions.KNIPRuntimeException}, which fails the node.
+     *
+     * @param row the currently processed DataRow, may be null if the module doesn't have inputs
+     * @return task creating the result cells of the row
+     */
+    public abstract Supplier<DataCell[]> computeCells(DataRow row);
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public DataCell[] getCells(final DataRow row) {
+        return computeCells(row).get();
     }
 
     /**
@@ -204,16 +231,17 @@ public abstract class AbstractIJCellFactory implements CellFactory {
      * @throws Exception
      */
     protected List<DataCell> executeRowModule(final Module rowModule) throws Exception {
-        @SuppressWarnings("rawtypes")
-        final Map<Class<?>, IJOutputAdapterInstance> adapterMap = new HashMap<Class<?>, IJOutputAdapterInstance>();
-
-        for (final ModuleItem<?> outItem : rowModule.getInfo().outputs()) {
-            if (!adapterMap.containsKey(outItem.getType())) {
-                adapterMap.put(outItem.getType(), IJAdapterProvider.getOutputAdapter(outItem.getType())
-                        .createAdapterInstance(m_exec));
-            }
-        }
+        runRowModule(rowModule);
+        return collectOutputCells(rowModule);
+    }
 
+    /**
+     * executes a preconfigured row module without collecting the results. The results can be converted to
+     * {@link DataCell}s later on (possibly on a different thread) using {@link #collectOutputCells(Module)}.
+     *
+     * @param rowModule a fully configured module ready for execution
+     */
+    protected void runRowModule(final Module rowModule) {
         // execute the module
         final List<ModulePreprocessor> pre = new ArrayList<ModulePreprocessor>();
         final InitPreprocessor ip = new InitPreprocessor();
@@ -226,7 +254,17 @@ public abstract class AbstractIJCellFactory implements CellFactory {
         final ModuleRunner runner = new ModuleRunner(IJGateway.getImageJContext(), rowModule, pre, null);
 
         runner.run();
+    }
 
+    /**
+     * converts the outputs of an executed module to {@link DataCell}s. Also updates the missing cell counter if
+     * necessary.
+     *
+     * @param rowModule a module that has been executed with {@link #runRowModule(Module)}
+     * @return list of DataCells that contains the module results
+     */
+    @SuppressWarnings("unchecked")
+    protected List<DataCell> collectOutputCells(final Module rowModule) {
         // TODO: potentially just make use of a postprocessor. but for now its fine!!
         // collect the outputs
         final List<DataCell> resCells = new ArrayList<DataCell>(rowModule.getOutputs().size());
@@ -235,11 +273,10 @@ public abstract class AbstractIJCellFactory implements CellFactory {
 
             if (ijObject == null) {
                 resCells.add(DataType.getMissingCell());
-                m_missingCellCount++;
+                m_missingCellCount.incrementAndGet();
             } else {
 
-                @SuppressWarnings("unchecked")
-                final DataCell[] dataCells = adapterMap.get(outItem.getType()).getDataCells(ijObject);
+                final DataCell[] dataCells = getOutputAdapterInstance(outItem.getType()).getDataCells(ijObject);
 
                 for (final DataCell dataCell : dataCells) {
                     resCells.add(dataCell);
@@ -250,6 +287,48 @@ public abstract class AbstractIJCellFactory implements CellFactory {
         return resCells;
     }
 
+    /*
+     * the adapter instances (and thus their cell factories) are created once per execution and reused for all rows
+     */
+    @SuppressWarnings("rawtypes")
+    private synchronized IJOutputAdapterInstance getOutputAdapterInstance(final Class<?> type) {
+        IJOutputAdapterInstance instance = m_adapterInstances.get(type);
+        if (instance == null) {
+            instance = IJAdapterProvider.getOutputAdapter(type).createAdapterInstance(m_exec);
+            m_adapterInstances.put(type, instance);
+        }
+        return instance;
+    }
+
+    /**
+     * creates missing cells for a module execution that failed and updates the missing cell counter accordingly.
+     *
+     * @param count number of missing cells
+     * @return array of missing cells
+     */
+    protected DataCell[] createMissingCells(final int count) {
+        final DataCell[] cells = new DataCell[count];
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] = DataType.getMissingCell();
+        }
+        m_missingCellCount.addAndGet(count);
+        return cells;
+    }
+
+    /**
+     * @param count number of missing cells
+     * @return a task which returns missing cells, see {@link #createMissingCells(int)}
+     */
+    protected Supplier<DataCell[]> createMissingCellsTask(final int count) {
+        final DataCell[] cells = createMissingCells(count);
+        return new Supplier<DataCell[]>() {
+            @Override
+            public DataCell[] get() {
+                return cells;
+            }
+        };
+    }
+
     @Override
     public void setProgress(final int curRowNr, final int rowCount, final RowKey lastKey, final ExecutionMonitor exec) {
         exec.setProgress((double)curRowNr / rowCount);
@@ -48,10 +48,25 @@
  */
 package org.knime.knip.imagej2.core.node;
 
+import java.awt.BorderLayout;
+import java.awt.FlowLayout;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.util.LinkedList;
 
+import javax.swing.JButton;
+import javax.swing.JPanel;
+
+import org.eclipse.core.runtime.IConfigurationElement;
+import org.eclipse.core.runtime.IExtensionPoint;
+import org.eclipse.core.runtime.Platform;
+import org.knime.core.data.DataCell;
+import org.knime.core.data.DataRow;
 import org.knime.core.data.DataTableSpec;
+import org.knime.core.data.container.CloseableRowIterator;
+import org.knime.core.node.BufferedDataTable;
 import org.knime.core.node.InvalidSettingsException;
+import org.knime.core.node.NodeLogger;
 import org.knime.core.node.NodeSettingsRO;
 import org.knime.core.node.NodeSettingsWO;
 import org.knime.core.node.NotConfigurableException;
@@ -59,6 +74,8 @@ import org.knime.core.node.defaultnodesettings.DefaultNodeSettingsPane;
 import org.knime.core.node.defaultnodesettings.DialogComponent;
 import org.knime.core.node.defaultnodesettings.DialogComponentColumnNameSelection;
 import org.knime.core.node.defaultnodesettings.SettingsModelString;
+import org.knime.core.node.port.PortObject;
+import org.knime.knip.base.data.img.ImgPlusValue;
 import org.knime.knip.imagej2.core.IJGateway;
 import org.knime.knip.imagej2.core.adapter.DataValueConfigGuiInfos;
 import org.knime.knip.imagej2.core.adapter.DialogComponentGroup;
@@ -69,6 +86,8 @@ import org.knime.knip.imagej2.core.adapter.IJInputAdapter;
 import org.knime.knip.imagej2.core.adapter.ModuleItemDataValueConfig;
 import org.knime.knip.imagej2.core.imagejdialog.DialogComponentImageJDlg;
 import org.knime.knip.imagej2.core.imagejdialog.HarvesterModuleWrapper;
+import org.knime.knip.imagej2.core.imagejdialog.IJPreview;
+import org.knime.knip.imagej2.core.imagejdialog.IJPreviewFactory;
 import org.knime.knip.imagej2.core.imagejdialog.SettingsModelImageJDlg;
 import org.scijava.module.Module;
 import org.scijava.module.ModuleInfo;
@@ -87,6 +106,12 @@ import org.scijava.module.process.ServicePreprocessor;
  */
 public abstract class AbstractIJNodeDialog extends DefaultNodeSettingsPane {
 
+    private static final NodeLogger LOGGER = NodeLogger.getLogger(AbstractIJNodeDialog.class);
+
+    private static final String PREVIEW_EXT_POINT_ID = "org.knime.knip.imagej2.core.ijpreview";
+
+    private static final String PREVIEW_EXT_POINT_ATTR_DF = "factory-class";
+
     /*
      * The ImageJ dialog might exist or might not exist. As long as the creation of the
      * dialog resides in this class this information is not available for the node model.
@@ -101,6 +126,9 @@ public abstract class AbstractIJNodeDialog extends DefaultNodeSettingsPane {
 
     private final DialogComponentImageJDlg m_imageJDialog;
 
+    // null if no preview factory is registered or the module can't be previewed
+    private final IJPreview m_preview;
+
     /**
      * Creates a new empty node dialog.
      *
@@ -118,6 +146,55 @@ public abstract class AbstractIJNodeDialog extends DefaultNodeSettingsPane {
 
         m_imageJDialog = new DialogComponentImageJDlg(AbstractIJNodeModel.createImageJDlgModel(), harvesterModule);
         m_useDialog = false;
+        m_preview = m_imageJDialog.isEmpty() ? null : createPreview(info);
+    }
+
+    /*
+     * Asks the first registered preview factory for a preview of the module.
+     */
+    private static IJPreview createPreview(final ModuleInfo info) {
+        final IExtensionPoint point = Platform.getExtensionRegistry().getExtensionPoint(PREVIEW_EXT_POINT_ID);
+        if (point == null) {
+            LOGGER.error("Invalid extension point: " + PREVIEW_EXT_POINT_ID);
+            return null;
+        }
+        for (final IConfigurationElement elem : point.getConfigurationElements()) {
+            try {
+                final IJPreviewFactory factory =
+                        (IJPreviewFactory)elem.createExecutableExtension(PREVIEW_EXT_POINT_ATTR_DF);
+                final IJPreview preview = factory.createPreview(info);
+                if (preview != null) {
+                    return preview;
+                }
+            } catch (final Throwable t) {
+                LOGGER.error("Extension " + elem.getDeclaringExtension().getUniqueIdentifier() + " ignored.", t);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Adds a tab showing the result of the module for the current parameters of the ImageJ dialog, computed from the
+     * first image of the input table. The tab is only added if the ImageJ dialog is used and a preview is available.
+     */
+    protected void addPreviewTabIfAvailable() {
+        if (m_preview == null || !m_useDialog) {
+            return;
+        }
+        final JButton update = new JButton("Update preview");
+        update.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(final ActionEvent e) {
+                m_preview.update(m_imageJDialog.getCurrentValues());
+            }
+        });
+        final JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        buttons.add(update);
+
+        final JPanel panel = new JPanel(new BorderLayout());
+        panel.add(m_preview.getComponent(), BorderLayout.CENTER);
+        panel.add(buttons, BorderLayout.SOUTH);
+        addTab("Preview", panel);
     }
 
     /**
@@ -252,6 +329,49 @@ public abstract class AbstractIJNodeDialog extends DefaultNodeSettingsPane {
 
     }
 
+    @Override
+    public void loadAdditionalSettingsFrom(final NodeSettingsRO settings, final PortObject[] input)
+            throws NotConfigurableException {
+        super.loadAdditionalSettingsFrom(settings, input);
+
+        if (m_preview != null && m_useDialog) {
+            final ImgPlusValue<?> img = firstImg(input);
+            if (img != null) {
+                m_preview.setSource(img);
+                m_preview.update(m_imageJDialog.getCurrentValues());
+            }
+        }
+    }
+
+    /*
+     * The first image of the first row of the input table, null if the input isn't available.
+     */
+    private static ImgPlusValue<?> firstImg(final PortObject[] input) {
+        if (input == null || input.length == 0 || !(input[0] instanceof BufferedDataTable)) {
+            return null;
+        }
+        try (CloseableRowIterator it = ((BufferedDataTable)input[0]).iterator()) {
+            if (!it.hasNext()) {
+                return null;
+            }
+            final DataRow row = it.next();
+            for (final DataCell cell : row) {
+                if (!cell.isMissing() && cell instanceof ImgPlusValue) {
+                    return (ImgPlusValue<?>)cell;
+                }
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void onClose() {
+        super.onClose();
+        if (m_preview != null) {
+            m_preview.close();
+        }
+    }
+
     @Override
     public void saveAdditionalSettingsTo(final NodeSettingsWO settings) throws InvalidSettingsException {
         super.saveAdditionalSettingsTo(settings);
@@ -0,0 +1,171 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright (C) 2003 - 2013
+ *  University of Konstanz, Germany and
+ *  KNIME GmbH, Konstanz, Germany
+ *  Website: http://www.knime.org; Email: contact@knime.org
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME GMBH herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * --------------------------------------------------------------------- *
+ *
+ */
+package org.knime.knip.imagej2.core.node;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import org.knime.core.data.DataCell;
+import org.knime.core.data.RowKey;
+import org.knime.core.data.def.DefaultRow;
+import org.knime.core.node.BufferedDataContainer;
+import org.knime.core.node.BufferedDataTable;
+import org.knime.core.node.CanceledExecutionException;
+import org.knime.core.node.KNIMEConstants;
+import org.knime.knip.base.exceptions.KNIPRuntimeException;
+import org.knime.knip.core.ThreadPoolExecutorService;
+
+/**
+ * Writes rows into a {@link BufferedDataContainer} whose cells are created by a background thread. While the cells of
+ * a row are serialized (e.g. images written to the file store), the calling thread can already compute the next row.
+ * The number of rows waiting for serialization is bounded and the rows are added to the container in the order in
+ * which they have been passed to {@link #addRow(RowKey, Supplier)}.
+ */
+final class PipelinedRowWriter {
+
+    /** number of rows which may wait for their serialization, each of them holds the results of a module. */
+    private static final int MAX_PENDING_ROWS = 2;
+
+    private final BufferedDataContainer m_container;
+
+    private final ExecutorService m_service;
+
+    private final Deque<PendingRow> m_pending = new ArrayDeque<PendingRow>();
+
+    /**
+     * @param container the container the rows are written to
+     */
+    PipelinedRowWriter(final BufferedDataContainer container) {
+        m_container = container;
+        m_service = new ThreadPoolExecutorService(KNIMEConstants.GLOBAL_THREAD_POOL.createSubPool(1));
+    }
+
+    /**
+     * Schedules the creation of the cells of a row. Blocks if too many rows are waiting for their serialization.
+     *
+     * @param key the key of the row
+     * @param cells task creating the cells of the row
+     * @throws CanceledExecutionException if the thread has been interrupted while waiting
+     */
+    void addRow(final RowKey key, final Supplier<DataCell[]> cells) throws CanceledExecutionException {
+        m_pending.add(new PendingRow(key, m_service.submit(new Callable<DataCell[]>() {
+            @Override
+            public DataCell[] call() {
+                return cells.get();
+            }
+        })));
+
+        while (m_pending.size() > MAX_PENDING_ROWS) {
+            writeNext();
+        }
+    }
+
+    /**
+     * Waits for all pending rows, then closes the container. The background thread is released in any case.
+     *
+     * @return the table of the container
+     * @throws CanceledExecutionException if the thread has been interrupted while waiting
+     */
+    BufferedDataTable close() throws CanceledExecutionException {
+        try {
+            while (!m_pending.isEmpty()) {
+                writeNext();
+            }
+        } finally {
+            m_service.shutdown();
+        }
+        m_container.close();
+        return m_container.getTable();
+    }
+
+    /**
+     * Discards all rows which haven't been written yet and releases the background thread.
+     */
+    void cancel() {
+        for (final PendingRow row : m_pending) {
+            row.m_cells.cancel(true);
+        }
+        m_pending.clear();
+        m_service.shutdownNow();
+    }
+
+    private void writeNext() throws CanceledExecutionException {
+        final PendingRow row = m_pending.poll();
+        try {
+            m_container.addRowToTable(new DefaultRow(row.m_key, row.m_cells.get()));
+        } catch (final InterruptedException e) {
+            cancel();
+            throw new CanceledExecutionException("Interrupted while waiting for the results of row " + row.m_key);
+        } catch (final ExecutionException e) {
+            cancel();
+            if (e.getCause() instanceof KNIPRuntimeException) {
+                throw (KNIPRuntimeException)e.getCause();
+            }
+            throw new KNIPRuntimeException("Could not create the cells of row " + row.m_key + ": "
+                    + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    private static final class PendingRow {
+
+        private final RowKey m_key;
+
+        private final Future<DataCell[]> m_cells;
+
+        PendingRow(final RowKey key, final Future<DataCell[]> cells) {
+            m_key = key;
+            m_cells = cells;
+        }
+    }
+}
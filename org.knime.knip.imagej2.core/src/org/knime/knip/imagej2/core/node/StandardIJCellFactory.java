@@ -51,6 +51,7 @@ package org.knime.knip.imagej2.core.node;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.function.Supplier;
 
 import org.knime.core.data.DataCell;
 import org.knime.core.data.DataColumnSpec;
@@ -58,6 +59,7 @@ import org.knime.core.data.DataColumnSpecCreator;
 import org.knime.core.data.DataRow;
 import org.knime.core.data.DataType;
 import org.knime.core.node.ExecutionContext;
+import org.knime.knip.base.exceptions.KNIPRuntimeException;
 import org.knime.knip.imagej2.core.adapter.IJAdapterProvider;
 import org.knime.knip.imagej2.core.adapter.IJOutputAdapter;
 import org.knime.knip.imagej2.core.adapter.ModuleItemConfig;
@@ -122,32 +124,40 @@ public class StandardIJCellFactory extends AbstractIJCellFactory {
      * mapping for configuration of the data values)
      */
     @Override
-    public DataCell[] getCells(final DataRow row) {
+    public Supplier<DataCell[]> computeCells(final DataRow row) {
         final Module module = AbstractIJNodeModel.createDialogConfiguredModule(m_moduleInfo, m_dialogModuleSettings);
+        final String rowKey = (row != null) ? row.getKey().getString() : "";
 
         configureRowConfigItems(row, module, m_moduleItemConfigs);
-        List<DataCell> resCells = null;
         try {
             configureDataValueConfigItems(row, module, m_moduleItemConfigs, m_identifier2CellID);
 
             //execute the configured plugin
-            resCells = executeRowModule(module);
+            runRowModule(module);
 
         } catch (MethodCallException e) {
-            fireWarning(row.getKey().getString(), e.getCause().getCause().getMessage());
+            fireWarning(rowKey, e.getCause().getCause().getMessage());
+            return createMissingCellsTask(module.getOutputs().size());
         } catch (Exception e) {
-            fireWarning(row.getKey().getString(), e.getMessage());
+            fireWarning(rowKey, e.getMessage());
+            return createMissingCellsTask(module.getOutputs().size());
         }
 
-        if (resCells == null) {
-            DataCell[] cells = new DataCell[module.getOutputs().size()];
-            for (int i = 0; i < cells.length; i++) {
-                cells[i] = DataType.getMissingCell();
+        return new Supplier<DataCell[]>() {
+            @Override
+            public DataCell[] get() {
+                try {
+                    final List<DataCell> resCells = collectOutputCells(module);
+                    return resCells.toArray(new DataCell[resCells.size()]);
+                } catch (KNIPRuntimeException e) {
+                    // the cell couldn't be written, e.g. the file store is full
+                    throw e;
+                } catch (Exception e) {
+                    fireWarning(rowKey, e.getMessage());
+                    return createMissingCells(module.getOutputs().size());
+                }
             }
-            return cells;
-        }
-
-        return resCells.toArray(new DataCell[resCells.size()]);
+        };
     }
 
     @Override
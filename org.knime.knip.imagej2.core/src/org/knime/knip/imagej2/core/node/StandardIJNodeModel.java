@@ -203,25 +203,33 @@ public class StandardIJNodeModel extends AbstractIJNodeModel {
 
             return ret;
         } else {
-            final BufferedDataContainer con = exec.createDataContainer(new DataTableSpec(cellFac.getColumnSpecs()));
+            // the results of a row are serialized while the next row is computed
+            final PipelinedRowWriter writer = new PipelinedRowWriter(
+                    exec.createDataContainer(new DataTableSpec(cellFac.getColumnSpecs())));
             final RowIterator rowIt = inData[0].iterator();
             final int rowCount = inData[0].getRowCount();
             int curRowNr = 0;
 
-            while (rowIt.hasNext()) {
-                final DataRow row = rowIt.next();
-                con.addRowToTable(new DefaultRow(row.getKey(), cellFac.getCells(row)));
+            final BufferedDataTable table;
+            try {
+                while (rowIt.hasNext()) {
+                    final DataRow row = rowIt.next();
+                    writer.addRow(row.getKey(), cellFac.computeCells(row));
 
-                cellFac.setProgress(curRowNr++, rowCount, row.getKey(), exec);
+                    cellFac.setProgress(curRowNr++, rowCount, row.getKey(), exec);
 
+                }
+                table = writer.close();
+            } catch (CanceledExecutionException | RuntimeException e) {
+                writer.cancel();
+                throw e;
             }
 
             if (cellFac.getMissingCellCount() > 0) {
                 setWarningMessage(cellFac.getMissingCellCount() + " cells could not be created");
             }
-            con.close();
 
-            return new BufferedDataTable[]{con.getTable()};
+            return new BufferedDataTable[]{table};
         }
     }
 
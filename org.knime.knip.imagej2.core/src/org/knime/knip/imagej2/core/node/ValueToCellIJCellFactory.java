@@ -48,8 +48,8 @@
  */
 package org.knime.knip.imagej2.core.node;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Supplier;
 
 import org.knime.core.data.DataCell;
 import org.knime.core.data.DataColumnSpec;
@@ -58,6 +58,7 @@ import org.knime.core.data.DataRow;
 import org.knime.core.data.DataType;
 import org.knime.core.data.DataValue;
 import org.knime.core.node.ExecutionContext;
+import org.knime.knip.base.exceptions.KNIPRuntimeException;
 import org.knime.knip.imagej2.core.adapter.IJAdapterProvider;
 import org.knime.knip.imagej2.core.adapter.IJOutputAdapter;
 import org.knime.knip.imagej2.core.adapter.ModuleItemConfig;
@@ -148,13 +149,12 @@ public class ValueToCellIJCellFactory extends AbstractIJCellFactory {
      */
     @SuppressWarnings("javadoc")
     @Override
-    public DataCell[] getCells(final DataRow row) {
-        final List<DataCell> resCells = new ArrayList<DataCell>();
+    public Supplier<DataCell[]> computeCells(final DataRow row) {
+        // one executed module per selected column, null for missing input cells
+        final Module[] modules = new Module[m_selectedColIndices.length];
         try {
             for (int i = 0; i < m_selectedColIndices.length; i++) {
-                if (row.getCell(m_selectedColIndices[i]).isMissing()) {
-                    resCells.add(DataType.getMissingCell());
-                } else {
+                if (!row.getCell(m_selectedColIndices[i]).isMissing()) {
                     final Module module =
                             AbstractIJNodeModel.createDialogConfiguredModule(m_moduleInfo, m_dialogModuleSettings);
                     //data value config
@@ -171,28 +171,40 @@ public class ValueToCellIJCellFactory extends AbstractIJCellFactory {
                     //valueConfig no
                     configureRowConfigItems(row, module, m_moduleItemConfigs);
 
-                    //execute - and add one data cell per iteration
-                    DataCell dataCell = executeRowModule(module).get(0);
-                    resCells.add(dataCell);
+                    //execute - the data cell is created by the returned task
+                    runRowModule(module);
+                    modules[i] = module;
                 }
             }
 
         } catch (MethodCallException e) {
             fireWarning(row.getKey().getString(), e.getCause().getCause().getMessage());
-
+            return createMissingCellsTask(m_selectedColIndices.length);
         } catch (Exception e) {
             fireWarning(row.getKey().getString(), e.getMessage());
+            return createMissingCellsTask(m_selectedColIndices.length);
         }
 
-        if (resCells.size() != m_selectedColIndices.length) {
-            DataCell[] cells = new DataCell[m_selectedColIndices.length];
-            for (int i = 0; i < cells.length; i++) {
-                cells[i] = DataType.getMissingCell();
+        return new Supplier<DataCell[]>() {
+            @Override
+            public DataCell[] get() {
+                final DataCell[] cells = new DataCell[modules.length];
+                try {
+                    for (int i = 0; i < modules.length; i++) {
+                        // add one data cell per executed module
+                        cells[i] = (modules[i] != null) ? collectOutputCells(modules[i]).get(0)
+                                : DataType.getMissingCell();
+                    }
+                } catch (KNIPRuntimeException e) {
+                    // the cell couldn't be written, e.g. the file store is full
+                    throw e;
+                } catch (Exception e) {
+                    fireWarning(row.getKey().getString(), e.getMessage());
+                    return createMissingCells(m_selectedColIndices.length);
+                }
+                return cells;
             }
-            return cells;
-        }
-
-        return resCells.toArray(new DataCell[resCells.size()]);
+        };
     }
 
     @Override
@@ -107,6 +107,8 @@ public class ValueToCellIJNodeDialog extends AbstractIJNodeDialog {
 
         //add the column bindings tab if necessary
         createColumnBindingTab(moduleInfo);
+
+        addPreviewTabIfAvailable();
     }
 
     @SuppressWarnings({"unchecked"})
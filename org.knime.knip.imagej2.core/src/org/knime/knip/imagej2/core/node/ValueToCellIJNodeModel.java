@@ -59,8 +59,6 @@ import org.knime.core.data.DataValue;
 import org.knime.core.data.RowIterator;
 import org.knime.core.data.container.CellFactory;
 import org.knime.core.data.container.ColumnRearranger;
-import org.knime.core.data.def.DefaultRow;
-import org.knime.core.node.BufferedDataContainer;
 import org.knime.core.node.BufferedDataTable;
 import org.knime.core.node.CanceledExecutionException;
 import org.knime.core.node.ExecutionContext;
@@ -184,20 +182,26 @@ public class ValueToCellIJNodeModel extends AbstractIJNodeModel {
         if (m_colCreationMode.getStringValue().equals(COL_CREATION_MODES[0])) {
 
             final RowIterator it = inTable.iterator();
-            final BufferedDataContainer con = exec.createDataContainer(new DataTableSpec(cellFac.getColumnSpecs()));
+            // the results of a row are serialized while the next row is computed
+            final PipelinedRowWriter writer = new PipelinedRowWriter(
+                    exec.createDataContainer(new DataTableSpec(cellFac.getColumnSpecs())));
             DataRow row;
             final int rowCount = inTable.getRowCount();
             int i = 0;
 
-            while (it.hasNext()) {
-                row = it.next();
-                con.addRowToTable(new DefaultRow(row.getKey(), cellFac.getCells(row)));
-                exec.checkCanceled();
-                cellFac.setProgress(i, rowCount, row.getKey(), exec);
-                i++;
+            try {
+                while (it.hasNext()) {
+                    row = it.next();
+                    writer.addRow(row.getKey(), cellFac.computeCells(row));
+                    exec.checkCanceled();
+                    cellFac.setProgress(i, rowCount, row.getKey(), exec);
+                    i++;
+                }
+                res = new BufferedDataTable[]{writer.close()};
+            } catch (CanceledExecutionException | RuntimeException e) {
+                writer.cancel();
+                throw e;
             }
-            con.close();
-            res = new BufferedDataTable[]{con.getTable()};
         } else {
             final ColumnRearranger colRearranger = new ColumnRearranger(inTable.getDataTableSpec());
             if (m_colCreationMode.getStringValue().equals(COL_CREATION_MODES[1])) {
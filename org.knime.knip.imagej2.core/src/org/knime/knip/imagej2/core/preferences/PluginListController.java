@@ -58,8 +58,11 @@ import org.eclipse.swt.widgets.FileDialog;
 import org.eclipse.swt.widgets.List;
 import org.eclipse.swt.widgets.MessageBox;
 import org.eclipse.swt.widgets.Shell;
+import org.knime.core.node.NodeLogger;
 import org.knime.knip.imagej2.core.FragmentWrapperUtil;
+import org.knime.knip.imagej2.core.IJGateway;
 import org.knime.knip.imagej2.core.KNIMEIMAGEJPlugin;
+import org.scijava.module.ModuleInfo;
 
 /**
  * contains the logic needed to add and remove ImageJ plugins (uses {@link FragmentWrapperUtil}).
@@ -71,6 +74,8 @@ import org.knime.knip.imagej2.core.KNIMEIMAGEJPlugin;
  */
 public class PluginListController {
 
+    private static final NodeLogger LOGGER = NodeLogger.getLogger(PluginListController.class);
+
     /**
      * holds a representation of all managed plugins. This contains plugins that change their state. E.g. a plugin can
      * be in removal state and may therefore not be found in the plugin folder still it is important to know that the
@@ -142,7 +147,7 @@ public class PluginListController {
                     success = FragmentWrapperUtil.installImageJPlugin(pluginDir, jarPath);
 
                     if (success) {
-                        m_pluginManager.put(identifier, new PluginState(identifier, PluginState.STATE.ADDING));
+                        m_pluginManager.put(identifier, new PluginState(identifier, hotLoad(pluginDir, identifier)));
                     } else {
                         m_pluginManager.put(identifier, new PluginState(identifier, PluginState.STATE.UNKNOWN));
                     }
@@ -160,6 +165,26 @@ public class PluginListController {
         return false;
     }
 
+    /**
+     * loads the plugins of a freshly installed fragment into the running ImageJ context, such that they can be used
+     * before KNIME is restarted.
+     * 
+     * @return the state of the installed plugin
+     */
+    private static PluginState.STATE hotLoad(final File pluginDir, final String identifier) {
+        try {
+            final java.util.List<ModuleInfo> modules =
+                    IJGateway.addPlugins(FragmentWrapperUtil.getFragmentClassPath(pluginDir, identifier));
+            LOGGER.info(modules.size() + " ImageJ modules of " + identifier
+                    + " have been loaded, restart KNIME to list them in the node repository.");
+            return PluginState.STATE.LOADED;
+        } catch (final Throwable t) {
+            //we have to catch throwable to detect errors caused by missing class definitions
+            LOGGER.warn("the plugins of " + identifier + " can not be loaded before KNIME is restarted", t);
+            return PluginState.STATE.ADDING;
+        }
+    }
+
     /**
      * triggers the uninstallation of the selected plugin and adjusts the pluginList.
      * 
@@ -67,7 +67,7 @@ public class PluginState {
      *
      */
     enum STATE {
-        ACTIVE, ADDING, REMOVING, UNKNOWN
+        ACTIVE, ADDING, LOADED, REMOVING, UNKNOWN
     }
 
     PluginState(final String pluginName, final STATE state) {
@@ -86,6 +86,8 @@ public class PluginState {
                 return m_name;
             case ADDING:
                 return m_name + " | adding (restart required)";
+            case LOADED:
+                return m_name + " | loaded (restart required to list its nodes)";
             case REMOVING:
                 return m_name + " | removing (restart required)";
             case UNKNOWN:
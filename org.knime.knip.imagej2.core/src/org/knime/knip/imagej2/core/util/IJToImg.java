@@ -49,6 +49,7 @@
 package org.knime.knip.imagej2.core.util;
 
 import ij.ImagePlus;
+import ij.ImageStack;
 import ij.measure.Measurements;
 import ij.process.ImageProcessor;
 import ij.process.ImageStatistics;
@@ -56,7 +57,9 @@ import net.imagej.ImgPlus;
 import net.imglib2.Cursor;
 import net.imglib2.IterableInterval;
 import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImg;
 import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
 import net.imglib2.iterator.IntervalIterator;
 import net.imglib2.ops.img.UnaryObjectFactory;
 import net.imglib2.ops.operation.UnaryOutputOperation;
@@ -128,6 +131,11 @@ public final class IJToImg<T extends RealType<T> & NativeType<T>> implements
 
     @Override
     public final ImgPlus<T> compute(final ImagePlus op, final ImgPlus<T> r) {
+        // planes of a matching type are copied in bulk, values can't exceed the range of the type then
+        if (!m_scale && copyPlanes(op, r)) {
+            return r;
+        }
+
         final IterableInterval<T> permuted = Views.iterable(ImgToIJ.extendAndPermute(r));
         final Cursor<T> cur;
         if (permuted.iterationOrder().equals(r.iterationOrder())) {
@@ -175,6 +183,36 @@ public final class IJToImg<T extends RealType<T> & NativeType<T>> implements
         return r;
     }
 
+    /*
+     * Copies the pixel arrays of the stack into an ArrayImg with X, Y, channel, Z, time order and the type matching the
+     * bit depth of the ImagePlus. Returns false for all other combinations.
+     */
+    @SuppressWarnings("unchecked")
+    private boolean copyPlanes(final ImagePlus op, final ImgPlus<T> r) {
+        if (!(r.getImg() instanceof ArrayImg) || !ImgToIJ.isIJ1Order(r) || r.dimension(0) != op.getWidth()
+                || r.dimension(1) != op.getHeight()) {
+            return false;
+        }
+        final int bitDepth = op.getBitDepth();
+        if (!(bitDepth == 8 && m_type instanceof UnsignedByteType)
+                && !(bitDepth == 16 && m_type instanceof UnsignedShortType)
+                && !(bitDepth == 32 && m_type instanceof FloatType)) {
+            return false;
+        }
+        final ImageStack stack = op.getStack();
+        final int planeSize = op.getWidth() * op.getHeight();
+        if (r.size() != (long)planeSize * stack.getSize()) {
+            return false;
+        }
+
+        final Object dest = ((ArrayImg<?, ? extends ArrayDataAccess<?>>)r.getImg()).update(null)
+                .getCurrentStorageArray();
+        for (int p = 0; p < stack.getSize(); p++) {
+            System.arraycopy(stack.getPixels(p + 1), 0, dest, p * planeSize, planeSize);
+        }
+        return true;
+    }
+
     @Override
     public UnaryOutputOperation<ImagePlus, ImgPlus<T>> copy() {
         return new IJToImg<T>(m_type);
@@ -51,11 +51,15 @@ package org.knime.knip.imagej2.core.util;
 import ij.ImagePlus;
 import ij.ImageStack;
 import ij.measure.Calibration;
+import ij.process.ByteProcessor;
+import ij.process.FloatProcessor;
 import ij.process.ImageProcessor;
+import ij.process.ShortProcessor;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
@@ -68,14 +72,22 @@ import net.imagej.axis.AxisType;
 import net.imagej.axis.DefaultTypedAxis;
 import net.imglib2.Cursor;
 import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
 import net.imglib2.IterableRealInterval;
 import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.converter.Converter;
 import net.imglib2.img.Img;
+import net.imglib2.img.basictypeaccess.array.ByteArray;
+import net.imglib2.img.basictypeaccess.array.FloatArray;
+import net.imglib2.img.basictypeaccess.array.ShortArray;
+import net.imglib2.img.planar.PlanarImg;
 import net.imglib2.iterator.IntervalIterator;
 import net.imglib2.ops.operation.UnaryOperation;
 import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
 import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.util.Fraction;
 import net.imglib2.view.Views;
 
 import org.knime.core.node.KNIMEConstants;
@@ -144,9 +156,6 @@ public final class ImgToIJ {
         final int width = (int)permuted.dimension(0);
         final int height = (int)permuted.dimension(1);
 
-        final ImagePlus r = new ImagePlus();
-        final ImageStack is = new ImageStack(width, height);
-
         final RandomAccessibleInterval<T> access =
                 img.iterationOrder().equals(((IterableRealInterval<?>)permuted).iterationOrder()) ? img : permuted;
 
@@ -164,6 +173,14 @@ public final class ImgToIJ {
             numSlices *= access.dimension(d);
         }
 
+        // planes of IJ1 native types are copied in bulk if possible
+        if (processorFactory instanceof DefaultProcessorFactory && converter instanceof DefaultImgToIJ1Converter) {
+            final ImageProcessor[] planeCopies = copyPlanes(img, width, height, numSlices);
+            if (planeCopies != null) {
+                return createImagePlus(img, permuted, planeCopies);
+            }
+        }
+
         // parallelization
         final ImageProcessor[] slices = new ImageProcessor[numSlices];
         final ExecutorService service =
@@ -219,6 +236,14 @@ public final class ImgToIJ {
             }
         }
 
+        return createImagePlus(img, permuted, slices);
+    }
+
+    private static ImagePlus createImagePlus(final ImgPlus<?> img, final RandomAccessibleInterval<?> permuted,
+                                             final ImageProcessor[] slices) {
+        final ImagePlus r = new ImagePlus();
+        final ImageStack is = new ImageStack((int)permuted.dimension(0), (int)permuted.dimension(1));
+
         // add slices to stack
         for (ImageProcessor slice : slices) {
             is.addSlice("", slice);
@@ -239,6 +264,138 @@ public final class ImgToIJ {
         return r;
     }
 
+    /*
+     * Copies the planes of a PlanarImg of an IJ1 native type with its axes already in IJ1 order directly into
+     * processors. Returns null for all other images.
+     */
+    private static ImageProcessor[] copyPlanes(final ImgPlus<?> img, final int width, final int height,
+                                               final int numSlices) {
+        Img<?> source = img.getImg();
+        if (source instanceof LazyImg) {
+            source = ((LazyImg<?>)source).getSource();
+        }
+        if (!(source instanceof PlanarImg) || !isIJ1Order(img)) {
+            return null;
+        }
+        final PlanarImg<?, ?> planar = (PlanarImg<?, ?>)source;
+        final Object type = planar.firstElement();
+        if (planar.numSlices() != numSlices
+                || !(type instanceof UnsignedByteType || type instanceof UnsignedShortType
+                        || type instanceof FloatType)) {
+            return null;
+        }
+
+        final ImageProcessor[] slices = new ImageProcessor[numSlices];
+        for (int i = 0; i < numSlices; i++) {
+            final Object pixels = planar.getPlane(i).getCurrentStorageArray();
+            if (type instanceof UnsignedByteType) {
+                slices[i] = new ByteProcessor(width, height, ((byte[])pixels).clone());
+            } else if (type instanceof UnsignedShortType) {
+                slices[i] = new ShortProcessor(width, height, ((short[])pixels).clone(), null);
+            } else {
+                slices[i] = new FloatProcessor(width, height, ((float[])pixels).clone());
+            }
+        }
+        return slices;
+    }
+
+    /**
+     * Selects the planes of a {@link PlanarImg} of an IJ1 native type which lie within the interval, without copying
+     * them. Dimensions of size one are dropped, as done by SubsetOperations.subsetview. Other than such a view, the
+     * result can be converted with the bulk copy of the planes by {@link #wrap(ImgPlus)}.
+     *
+     * @param img the image
+     * @param interval the subset of the image, which must span whole XY planes
+     * @return the selected planes or <code>null</code>, if the image isn't a {@link PlanarImg} of an IJ1 native type
+     *         or the interval doesn't span whole planes
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    public static Img<?> planarSubset(final Img<?> img, final Interval interval) {
+        final Img<?> source = img instanceof LazyImg ? ((LazyImg<?>)img).getSource() : img;
+        final int n = source.numDimensions();
+        if (!(source instanceof PlanarImg) || n < 2 || interval.numDimensions() != n) {
+            return null;
+        }
+        for (int d = 0; d < 2; d++) {
+            if (interval.min(d) != source.min(d) || interval.max(d) != source.max(d) || interval.dimension(d) == 1) {
+                return null;
+            }
+        }
+
+        final List<Long> dims = new ArrayList<Long>(n);
+        for (int d = 0; d < n; d++) {
+            if (d < 2 || interval.dimension(d) > 1) {
+                dims.add(interval.dimension(d));
+            }
+        }
+        final long[] dimArray = new long[dims.size()];
+        for (int d = 0; d < dimArray.length; d++) {
+            dimArray[d] = dims.get(d);
+        }
+
+        final PlanarImg planar = (PlanarImg)source;
+        final Object type = planar.firstElement();
+        final PlanarImg res;
+        if (type instanceof UnsignedByteType) {
+            final PlanarImg<UnsignedByteType, ByteArray> byteImg =
+                    new PlanarImg<UnsignedByteType, ByteArray>(dimArray, new Fraction());
+            byteImg.setLinkedType(new UnsignedByteType(byteImg));
+            res = byteImg;
+        } else if (type instanceof UnsignedShortType) {
+            final PlanarImg<UnsignedShortType, ShortArray> shortImg =
+                    new PlanarImg<UnsignedShortType, ShortArray>(dimArray, new Fraction());
+            shortImg.setLinkedType(new UnsignedShortType(shortImg));
+            res = shortImg;
+        } else if (type instanceof FloatType) {
+            final PlanarImg<FloatType, FloatArray> floatImg =
+                    new PlanarImg<FloatType, FloatArray>(dimArray, new Fraction());
+            floatImg.setLinkedType(new FloatType(floatImg));
+            res = floatImg;
+        } else {
+            return null;
+        }
+
+        // the planes are visited in the order of the result, the first plane dimension runs fastest
+        final long[] pos = new long[n];
+        interval.min(pos);
+        for (int p = 0; p < res.numSlices(); p++) {
+            long index = 0;
+            long stride = 1;
+            for (int d = 2; d < n; d++) {
+                index += (pos[d] - source.min(d)) * stride;
+                stride *= source.dimension(d);
+            }
+            res.setPlane(p, planar.getPlane((int)index));
+
+            for (int d = 2; d < n; d++) {
+                if (pos[d] < interval.max(d)) {
+                    pos[d]++;
+                    break;
+                }
+                pos[d] = interval.min(d);
+            }
+        }
+        return res;
+    }
+
+    /*
+     * X and Y are the first axes and all further axes follow in the order channel, Z, time.
+     */
+    static boolean isIJ1Order(final ImgPlus<?> img) {
+        if (img.numDimensions() < 2 || !Axes.X.equals(img.axis(0).type()) || !Axes.Y.equals(img.axis(1).type())) {
+            return false;
+        }
+        int last = 1;
+        for (int d = 2; d < img.numDimensions(); d++) {
+            final Integer idx = DEFAULT_IJ1_MAPPING.get(img.axis(d).type());
+            if (idx == null || idx <= last) {
+                return false;
+            }
+            last = idx;
+        }
+        return true;
+    }
+
     /**
      * @param permuted
      * @return
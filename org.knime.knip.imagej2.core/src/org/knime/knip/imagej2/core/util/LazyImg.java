@@ -0,0 +1,151 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright (C) 2003 - 2013
+ *  University of Konstanz, Germany and
+ *  KNIME GmbH, Konstanz, Germany
+ *  Website: http://www.knime.org; Email: contact@knime.org
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME GMBH herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * --------------------------------------------------------------------- *
+ *
+ */
+package org.knime.knip.imagej2.core.util;
+
+import net.imagej.ImgPlus;
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.AbstractImg;
+import net.imglib2.img.Img;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.ImgView;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.view.Views;
+
+import org.knime.knip.base.data.img.ImgPlusValue;
+
+/**
+ * {@link Img} which defers the deserialization of an {@link ImgPlusValue} until the pixels are accessed for the first
+ * time. The dimensions are taken from the {@link ImgPlusValue} and are available without reading the image, so
+ * modules which only inspect the dimensions of an input or which don't touch it at all never decode the image.
+ *
+ * @param <T>
+ */
+public class LazyImg<T extends RealType<T>> extends AbstractImg<T> {
+
+    private ImgPlusValue<T> m_value;
+
+    private Img<T> m_source;
+
+    /**
+     * @param value the {@link ImgPlusValue} to be loaded on first access
+     */
+    public LazyImg(final ImgPlusValue<T> value) {
+        super(value.getDimensions());
+        m_value = value;
+    }
+
+    /**
+     * Creates an {@link ImgPlus} with the metadata of the given value, whose pixels are loaded on first access.
+     *
+     * @param value the {@link ImgPlusValue} to wrap
+     * @return the lazily loaded {@link ImgPlus}
+     */
+    public static <T extends RealType<T>> ImgPlus<T> wrap(final ImgPlusValue<T> value) {
+        return new ImgPlus<T>(new LazyImg<T>(value), value.getMetadata());
+    }
+
+    /**
+     * @return true, if the underlying image has already been loaded
+     */
+    public synchronized boolean isLoaded() {
+        return m_source != null;
+    }
+
+    /**
+     * @return the underlying {@link Img}, loaded from the {@link ImgPlusValue} if necessary
+     */
+    public synchronized Img<T> getSource() {
+        if (m_source == null) {
+            Img<T> img = m_value.getImgPlus().getImg();
+            if (!Views.isZeroMin(img)) {
+                img = ImgView.wrap(Views.zeroMin(img), img.factory());
+            }
+            m_source = img;
+            // the value isn't needed anymore
+            m_value = null;
+        }
+        return m_source;
+    }
+
+    @Override
+    public RandomAccess<T> randomAccess() {
+        return getSource().randomAccess();
+    }
+
+    @Override
+    public Cursor<T> cursor() {
+        return getSource().cursor();
+    }
+
+    @Override
+    public Cursor<T> localizingCursor() {
+        return getSource().localizingCursor();
+    }
+
+    @Override
+    public T firstElement() {
+        return getSource().firstElement();
+    }
+
+    @Override
+    public Object iterationOrder() {
+        return getSource().iterationOrder();
+    }
+
+    @Override
+    public ImgFactory<T> factory() {
+        return getSource().factory();
+    }
+
+    @Override
+    public Img<T> copy() {
+        return getSource().copy();
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright (C) 2003 - 2013
+ *  University of Konstanz, Germany and
+ *  KNIME GmbH, Konstanz, Germany
+ *  Website: http://www.knime.org; Email: contact@knime.org
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME GMBH herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * --------------------------------------------------------------------- *
+ *
+ */
+package org.knime.knip.imagej2.interactive;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import javax.swing.JComponent;
+
+import org.knime.knip.base.data.img.ImgPlusValue;
+import org.knime.knip.imagej2.core.imagejdialog.IJPreview;
+import org.scijava.module.ModuleInfo;
+
+import net.imagej.ImgPlus;
+
+/**
+ * {@link IJPreview} which computes the previews with a {@link PreviewEngine} and shows them in a {@link PreviewPanel}.
+ * The engine and its worker thread only exist while the node dialog is open.
+ */
+class ModulePreview implements IJPreview {
+
+    private final ModuleInfo m_info;
+
+    private final PreviewPanel m_panel = new PreviewPanel();
+
+    @SuppressWarnings("rawtypes")
+    private PreviewEngine m_engine;
+
+    /**
+     * @param info the module to preview
+     */
+    ModulePreview(final ModuleInfo info) {
+        m_info = info;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public JComponent getComponent() {
+        return m_panel;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    @Override
+    public synchronized void setSource(final ImgPlusValue<?> value) {
+        if (m_engine == null) {
+            m_engine = new PreviewEngine(m_info);
+        }
+        m_engine.setSource(new Callable<ImgPlus>() {
+            @Override
+            public ImgPlus call() {
+                return value.getImgPlus();
+            }
+        }, PreviewEngine.Mode.CROP);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void update(final Map<String, Object> parameters) {
+        if (m_engine != null) {
+            m_engine.requestPreview(parameters, m_panel);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void close() {
+        if (m_engine != null) {
+            m_engine.dispose();
+            m_engine = null;
+        }
+    }
+}
@@ -0,0 +1,410 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright (C) 2003 - 2013
+ *  University of Konstanz, Germany and
+ *  KNIME GmbH, Konstanz, Germany
+ *  Website: http://www.knime.org; Email: contact@knime.org
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME GMBH herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * --------------------------------------------------------------------- *
+ *
+ */
+package org.knime.knip.imagej2.interactive;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.knime.core.node.NodeLogger;
+import org.knime.knip.imagej2.core.IJGateway;
+import org.scijava.module.Module;
+import org.scijava.module.ModuleInfo;
+import org.scijava.module.ModuleItem;
+import org.scijava.module.ModuleRunner;
+import org.scijava.module.process.InitPreprocessor;
+import org.scijava.module.process.ModulePreprocessor;
+import org.scijava.module.process.ServicePreprocessor;
+
+import net.imagej.Dataset;
+import net.imagej.DatasetService;
+import net.imagej.ImgPlus;
+import net.imagej.axis.Axes;
+import net.imagej.axis.AxisType;
+import net.imglib2.Cursor;
+import net.imglib2.FinalInterval;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.view.Views;
+
+/**
+ * Runs an ImageJ module on a small part of an image in the background, such that the result of the current
+ * parameters can be shown while they are tuned in a node dialog. The part is either a centered tile of the image or
+ * the whole image downsampled in X and Y. Requesting a new preview cancels the run of the previous one, results of
+ * stale runs are dropped. Previews are cached by their parameters, going back to earlier parameters does not run the
+ * module again.
+ *
+ * @param <T> pixel type of the previewed image
+ */
+public class PreviewEngine<T extends RealType<T> & NativeType<T>> {
+
+    private static final NodeLogger LOGGER = NodeLogger.getLogger(PreviewEngine.class);
+
+    /**
+     * How the previewed part of the image is chosen.
+     */
+    public enum Mode {
+        /** a tile at the center of the image in its original resolution. */
+        CROP,
+        /** the whole image downsampled in X and Y. */
+        DOWNSAMPLE
+    }
+
+    /**
+     * Receives the previews, called from the worker thread of the engine.
+     */
+    public interface PreviewListener {
+
+        /**
+         * @param preview the first image output of the module
+         */
+        void previewReady(ImgPlus<? extends RealType<?>> preview);
+
+        /**
+         * @param cause the error the module failed with
+         */
+        void previewFailed(Throwable cause);
+    }
+
+    /** default edge length in X and Y of the previewed part. */
+    public static final int DEFAULT_PREVIEW_SIZE = 256;
+
+    /*
+     * Number of previews kept in the cache.
+     */
+    private static final int MAX_CACHED_PREVIEWS = 32;
+
+    private final ModuleInfo m_info;
+
+    private final int m_previewSize;
+
+    private final ExecutorService m_executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(final Runnable r) {
+            final Thread t = new Thread(r, "ImageJ preview");
+            t.setDaemon(true);
+            return t;
+        }
+    });
+
+    /*
+     * Cache of the previews of the current source by their parameters, least recently used previews are dropped first.
+     * The parameters are compared by the equality of their values.
+     */
+    private final Map<Map<String, Object>, ImgPlus<? extends RealType<?>>> m_cache =
+            new LinkedHashMap<Map<String, Object>, ImgPlus<? extends RealType<?>>>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(
+                        final Map.Entry<Map<String, Object>, ImgPlus<? extends RealType<?>>> eldest) {
+                    return size() > MAX_CACHED_PREVIEWS;
+                }
+            };
+
+    /*
+     * Incremented for each request, only the run of the latest request delivers its result.
+     */
+    private final AtomicLong m_generation = new AtomicLong();
+
+    /*
+     * The previewed part of the current source, prepared by the worker thread before any preview of the source.
+     */
+    private Future<ImgPlus<T>> m_source;
+
+    private Future<?> m_current;
+
+    /**
+     * @param info the module to preview
+     */
+    public PreviewEngine(final ModuleInfo info) {
+        this(info, DEFAULT_PREVIEW_SIZE);
+    }
+
+    /**
+     * @param info the module to preview
+     * @param previewSize edge length in X and Y of the previewed part
+     */
+    public PreviewEngine(final ModuleInfo info, final int previewSize) {
+        m_info = info;
+        m_previewSize = previewSize;
+    }
+
+    /**
+     * Sets the image the previews are computed from, e.g. the image of the first row of the input table. The cached
+     * previews are dropped. The image is read and its previewed part is copied by the worker thread, the caller
+     * doesn't wait for it.
+     *
+     * @param img provides the image, called from the worker thread of the engine
+     * @param mode how the previewed part is chosen
+     */
+    public synchronized void setSource(final Callable<ImgPlus<T>> img, final Mode mode) {
+        cancel();
+        m_cache.clear();
+        if (m_source != null) {
+            m_source.cancel(true);
+        }
+        m_source = m_executor.submit(new Callable<ImgPlus<T>>() {
+            @Override
+            public ImgPlus<T> call() throws Exception {
+                final ImgPlus<T> source = img.call();
+                return mode == Mode.CROP ? crop(source) : downsample(source);
+            }
+        });
+    }
+
+    /**
+     * Requests the preview for the given parameters. A cached preview is delivered right away, otherwise the module is
+     * run in the background and a still running preview of other parameters is cancelled.
+     *
+     * @param parameters values of the module inputs by their names, the image input is set by the engine
+     * @param listener receives the preview
+     */
+    public synchronized void requestPreview(final Map<String, Object> parameters, final PreviewListener listener) {
+        if (m_source == null) {
+            return;
+        }
+        cancel();
+
+        // copied such that later changes of the caller's map don't change the key
+        final Map<String, Object> key = new HashMap<String, Object>(parameters);
+        final ImgPlus<? extends RealType<?>> cached = m_cache.get(key);
+        if (cached != null) {
+            listener.previewReady(cached);
+            return;
+        }
+
+        final long generation = m_generation.get();
+        final Future<ImgPlus<T>> source = m_source;
+        m_current = m_executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    // already done, the single worker thread prepared the source before
+                    final ImgPlus<? extends RealType<?>> preview = runModule(copy(source.get()), parameters);
+                    synchronized (PreviewEngine.this) {
+                        if (generation != m_generation.get()) {
+                            return;
+                        }
+                        if (preview != null) {
+                            m_cache.put(key, preview);
+                        }
+                    }
+                    if (preview != null) {
+                        listener.previewReady(preview);
+                    } else {
+                        listener.previewFailed(new IllegalStateException("The module has no image output."));
+                    }
+                } catch (final Throwable e) {
+                    //we have to catch throwable to detect errors caused by missing class definitions
+                    final Throwable t = e instanceof ExecutionException ? e.getCause() : e;
+                    if (generation == m_generation.get()) {
+                        LOGGER.debug("preview of " + m_info.getTitle() + " failed", t);
+                        listener.previewFailed(t);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Cancels the running preview and stops the worker thread of the engine.
+     */
+    public synchronized void dispose() {
+        cancel();
+        m_executor.shutdownNow();
+        m_cache.clear();
+        m_source = null;
+    }
+
+    /**
+     * @param item an input of a module
+     * @return true if the engine sets the previewed part as value of the input, i.e. if it is declared exactly as
+     *         {@link ImgPlus} or {@link Dataset}. Inputs of more general types, e.g. {@link Object}, are left alone.
+     */
+    static boolean isImageInput(final ModuleItem<?> item) {
+        return item.getType() == ImgPlus.class || item.getType() == Dataset.class;
+    }
+
+    /*
+     * Makes the running preview stale and interrupts it, its result is dropped even if the module ignores the
+     * interruption.
+     */
+    private void cancel() {
+        m_generation.incrementAndGet();
+        if (m_current != null) {
+            m_current.cancel(true);
+            m_current = null;
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private ImgPlus<? extends RealType<?>> runModule(final ImgPlus<T> img, final Map<String, Object> parameters) {
+        final Module module = IJGateway.getInstance().getModuleService().createModule(m_info);
+
+        for (final Map.Entry<String, Object> parameter : parameters.entrySet()) {
+            module.setInput(parameter.getKey(), parameter.getValue());
+            module.setResolved(parameter.getKey(), true);
+        }
+
+        // the first input taking an image gets the previewed part
+        for (final ModuleItem<?> item : m_info.inputs()) {
+            if (!isImageInput(item)) {
+                continue;
+            }
+            final Object value;
+            if (item.getType() == ImgPlus.class) {
+                value = img;
+            } else {
+                value = IJGateway.getImageJContext().getService(DatasetService.class).create(img);
+            }
+            module.setInput(item.getName(), value);
+            module.setResolved(item.getName(), true);
+            break;
+        }
+
+        final List<ModulePreprocessor> pre = new ArrayList<ModulePreprocessor>();
+        final ServicePreprocessor sp = new ServicePreprocessor();
+        IJGateway.getImageJContext().inject(sp);
+        pre.add(sp);
+        final InitPreprocessor ip = new InitPreprocessor();
+        ip.setContext(IJGateway.getImageJContext());
+        pre.add(ip);
+        new ModuleRunner(IJGateway.getImageJContext(), module, pre, null).run();
+
+        for (final ModuleItem<?> item : m_info.outputs()) {
+            final Object output = module.getOutput(item.getName());
+            if (output instanceof Dataset) {
+                return (ImgPlus)((Dataset)output).getImgPlus();
+            } else if (output instanceof ImgPlus) {
+                return (ImgPlus)output;
+            } else if (output instanceof Img) {
+                return new ImgPlus((Img)output);
+            }
+        }
+        return null;
+    }
+
+    /*
+     * A tile of the preview size at the center of the image in X and Y, all other dimensions are kept.
+     */
+    private ImgPlus<T> crop(final ImgPlus<T> img) {
+        final long[] min = new long[img.numDimensions()];
+        final long[] max = new long[img.numDimensions()];
+        for (int d = 0; d < min.length; d++) {
+            final AxisType type = img.axis(d).type();
+            if ((type == Axes.X || type == Axes.Y) && img.dimension(d) > m_previewSize) {
+                min[d] = img.min(d) + (img.dimension(d) - m_previewSize) / 2;
+                max[d] = min[d] + m_previewSize - 1;
+            } else {
+                min[d] = img.min(d);
+                max[d] = img.max(d);
+            }
+        }
+        return copy(img, Views.interval(img, new FinalInterval(min, max)), 1);
+    }
+
+    /*
+     * The whole image subsampled in X and Y such that it fits into the preview size.
+     */
+    private ImgPlus<T> downsample(final ImgPlus<T> img) {
+        final long step = Math.max(1, (Math.max(dimension(img, Axes.X), dimension(img, Axes.Y)) + m_previewSize - 1)
+                / m_previewSize);
+        final long[] steps = new long[img.numDimensions()];
+        for (int d = 0; d < steps.length; d++) {
+            final AxisType type = img.axis(d).type();
+            steps[d] = type == Axes.X || type == Axes.Y ? step : 1;
+        }
+        return copy(img, Views.zeroMin(Views.subsample(Views.zeroMin(img), steps)), step);
+    }
+
+    private static long dimension(final ImgPlus<?> img, final AxisType type) {
+        final int d = img.dimensionIndex(type);
+        return d < 0 ? 1 : img.dimension(d);
+    }
+
+    /*
+     * Each run gets its own copy of the previewed part, modules may change their inputs.
+     */
+    private ImgPlus<T> copy(final ImgPlus<T> img) {
+        return copy(img, img, 1);
+    }
+
+    private static <T extends RealType<T> & NativeType<T>> ImgPlus<T>
+            copy(final ImgPlus<T> metadata, final RandomAccessibleInterval<T> source, final long xyStep) {
+        final long[] dims = new long[source.numDimensions()];
+        source.dimensions(dims);
+        final Img<T> res = new ArrayImgFactory<T>().create(dims, metadata.firstElement().createVariable());
+
+        final Cursor<T> in = Views.flatIterable(source).cursor();
+        final Cursor<T> out = Views.flatIterable(res).cursor();
+        while (out.hasNext()) {
+            out.next().set(in.next());
+        }
+
+        final AxisType[] axes = new AxisType[dims.length];
+        final double[] scales = new double[dims.length];
+        for (int d = 0; d < dims.length; d++) {
+            axes[d] = metadata.axis(d).type();
+            final double scale = metadata.axis(d).averageScale(0, 1);
+            scales[d] = axes[d] == Axes.X || axes[d] == Axes.Y ? scale * xyStep : scale;
+        }
+        return new ImgPlus<T>(res, metadata.getName(), axes, scales);
+    }
+}
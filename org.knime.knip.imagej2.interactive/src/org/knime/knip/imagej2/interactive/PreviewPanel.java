@@ -0,0 +1,154 @@
+/*
+ * ------------------------------------------------------------------------
+ *
+ *  Copyright (C) 2003 - 2013
+ *  University of Konstanz, Germany and
+ *  KNIME GmbH, Konstanz, Germany
+ *  Website: http://www.knime.org; Email: contact@knime.org
+ *
+ *  This program is free software; you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License, Version 3, as
+ *  published by the Free Software Foundation.
+ *
+ *  This program is distributed in the hope that it will be useful, but
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program; if not, see <http://www.gnu.org/licenses>.
+ *
+ *  Additional permission under GNU GPL version 3 section 7:
+ *
+ *  KNIME interoperates with ECLIPSE solely via ECLIPSE's plug-in APIs.
+ *  Hence, KNIME and ECLIPSE are both independent programs and are not
+ *  derived from each other. Should, however, the interpretation of the
+ *  GNU GPL Version 3 ("License") under any applicable laws result in
+ *  KNIME and ECLIPSE being a combined program, KNIME GMBH herewith grants
+ *  you the additional permission to use and propagate KNIME together with
+ *  ECLIPSE with only the license terms in place for ECLIPSE applying to
+ *  ECLIPSE and the GNU GPL Version 3 applying for KNIME, provided the
+ *  license terms of ECLIPSE themselves allow for the respective use and
+ *  propagation of ECLIPSE together with KNIME.
+ *
+ *  Additional permission relating to nodes for KNIME that extend the Node
+ *  Extension (and in particular that are based on subclasses of NodeModel,
+ *  NodeDialog, and NodeView) and that only interoperate with KNIME through
+ *  standard APIs ("Nodes"):
+ *  Nodes are deemed to be separate and independent programs and to not be
+ *  covered works.  Notwithstanding anything to the contrary in the
+ *  License, the License does not apply to Nodes, you are not required to
+ *  license Nodes under the License, and you are granted a license to
+ *  prepare and propagate Nodes, in each case even if such Nodes are
+ *  propagated with or for interoperation with KNIME.  The owner of a Node
+ *  may freely choose the license terms applicable to such Node, including
+ *  when such Node is propagated with or for interoperation with KNIME.
+ * --------------------------------------------------------------------- *
+ *
+ */
+package org.knime.knip.imagej2.interactive;
+
+import java.awt.BorderLayout;
+import java.awt.Dimension;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+
+import javax.swing.ImageIcon;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.SwingConstants;
+import javax.swing.SwingUtilities;
+
+import net.imagej.ImgPlus;
+import net.imagej.axis.Axes;
+import net.imglib2.RandomAccess;
+import net.imglib2.type.numeric.RealType;
+
+/**
+ * Shows the previews of a {@link PreviewEngine}. The first XY plane of a preview is displayed with its gray values
+ * stretched between their minimum and maximum.
+ */
+public class PreviewPanel extends JPanel implements PreviewEngine.PreviewListener {
+
+    private static final long serialVersionUID = 1L;
+
+    private final JLabel m_label = new JLabel("", SwingConstants.CENTER);
+
+    /**
+     * Creates an empty preview panel.
+     */
+    public PreviewPanel() {
+        super(new BorderLayout());
+        add(m_label, BorderLayout.CENTER);
+        setPreferredSize(new Dimension(PreviewEngine.DEFAULT_PREVIEW_SIZE, PreviewEngine.DEFAULT_PREVIEW_SIZE));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void previewReady(final ImgPlus<? extends RealType<?>> preview) {
+        final Image image = render(preview);
+        SwingUtilities.invokeLater(new Runnable() {
+            @Override
+            public void run() {
+                m_label.setText(null);
+                m_label.setIcon(new ImageIcon(image));
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void previewFailed(final Throwable cause) {
+        SwingUtilities.invokeLater(new Runnable() {
+            @Override
+            public void run() {
+                m_label.setIcon(null);
+                m_label.setText("No preview: " + cause.getMessage());
+            }
+        });
+    }
+
+    /*
+     * Renders the first XY plane of the preview as 8 bit gray image.
+     */
+    private static BufferedImage render(final ImgPlus<? extends RealType<?>> preview) {
+        final int xd = Math.max(0, preview.dimensionIndex(Axes.X));
+        final int yd = preview.dimensionIndex(Axes.Y);
+        final int width = (int)preview.dimension(xd);
+        final int height = yd < 0 ? 1 : (int)preview.dimension(yd);
+
+        final RandomAccess<? extends RealType<?>> ra = preview.randomAccess();
+        for (int d = 0; d < preview.numDimensions(); d++) {
+            ra.setPosition(preview.min(d), d);
+        }
+
+        final double[] values = new double[width * height];
+        double min = Double.MAX_VALUE;
+        double max = -Double.MAX_VALUE;
+        for (int y = 0; y < height; y++) {
+            if (yd >= 0) {
+                ra.setPosition(preview.min(yd) + y, yd);
+            }
+            for (int x = 0; x < width; x++) {
+                ra.setPosition(preview.min(xd) + x, xd);
+                final double v = ra.get().getRealDouble();
+                values[y * width + x] = v;
+                min = Math.min(min, v);
+                max = Math.max(max, v);
+            }
+        }
+
+        final BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+        final double range = max > min ? max - min : 1;
+        final byte[] pixels = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            pixels[i] = (byte)Math.round((values[i] - min) / range * 255);
+        }
+        image.getRaster().setDataElements(0, 0, width, height, pixels);
+        return image;
+    }
+}